@@ -0,0 +1,138 @@
+package com.scurab.minesweeper;
+
+/**
+ * Mines of square board as bit per field, every row is stored in own long words<br/>
+ * <p/>
+ * Neighbour counts are computed for 64 fields at once. Up to 8 neighbour words
+ * (row above, own row and row below shifted by one column) are summed by bit-sliced adders
+ * into 4 bit planes, so bit j of plane k is k-th bit of count for field j.
+ * Only for {@link Topology#square(int)}, other topologies use neighbour lists.
+ */
+final class BitBoard {
+
+    private final int mSize;
+
+    /* long words per row */
+    private final int mWords;
+
+    private final long[] mBits;
+
+    BitBoard(int size) {
+        mSize = size;
+        mWords = (size + 63) >>> 6;
+        mBits = new long[size * mWords];
+    }
+
+    /**
+     * @param field raw values of fields, see {@link MineSweeper#saveInstance()}
+     * @param size  size of board
+     * @return bitboard of mines in field
+     */
+    static BitBoard fromField(int[] field, int size) {
+        BitBoard result = new BitBoard(size);
+        for (int i = 0; i < field.length; i++) {
+            if ((field[i] & MineSweeper.MASK_DATA) == MineSweeper.DATA_MINE) {
+                result.set(i / size, i % size);
+            }
+        }
+        return result;
+    }
+
+    void set(int row, int column) {
+        mBits[row * mWords + (column >>> 6)] |= 1L << column;
+    }
+
+    boolean isSet(int row, int column) {
+        return (mBits[row * mWords + (column >>> 6)] & (1L << column)) != 0;
+    }
+
+    /**
+     * Add amount of mines around to data of every not mine field, same as {@link MineSweeper#generateAdjacentsByNeighbours()}
+     *
+     * @param field raw values of fields, must have size * size items
+     */
+    void addAdjacents(int[] field) {
+        final long[] bits = mBits;
+        final int words = mWords;
+        for (int row = 0; row < mSize; row++) {
+            final int mid = row * words;
+            final int up = row > 0 ? mid - words : -1;
+            final int down = row < mSize - 1 ? mid + words : -1;
+            for (int w = 0; w < words; w++) {
+                //up row
+                long b = word(up, w);
+                long a = west(b, word(up, w - 1));
+                long c = east(b, word(up, w + 1));
+                //own row, field itself is not neighbour
+                long m = bits[mid + w];
+                long d = west(m, word(mid, w - 1));
+                long e = east(m, word(mid, w + 1));
+                //down row
+                long g = word(down, w);
+                long f = west(g, word(down, w - 1));
+                long h = east(g, word(down, w + 1));
+
+                //weight 1: full adders over rows above and below, half adder in own row
+                long s1 = a ^ b ^ c;
+                long k1 = (a & b) | (c & (a ^ b));
+                long s2 = f ^ g ^ h;
+                long k2 = (f & g) | (h & (f ^ g));
+                long s3 = d ^ e;
+                long k3 = d & e;
+                long bit0 = s1 ^ s2 ^ s3;
+                long k4 = (s1 & s2) | (s3 & (s1 ^ s2));
+                //weight 2
+                long t = k1 ^ k2 ^ k3;
+                long k5 = (k1 & k2) | (k3 & (k1 ^ k2));
+                long bit1 = t ^ k4;
+                long k6 = t & k4;
+                //weight 4 and 8
+                long bit2 = k5 ^ k6;
+                long bit3 = k5 & k6;
+
+                //only not mine fields with any mine around
+                long todo = (bit0 | bit1 | bit2 | bit3) & ~m;
+                final int base = row * mSize + (w << 6);
+                while (todo != 0) {
+                    int j = Long.numberOfTrailingZeros(todo);
+                    todo &= todo - 1;
+                    int column = (w << 6) + j;
+                    if (column >= mSize) {
+                        break;
+                    }
+                    field[base + j] += (int) ((bit0 >>> j) & 1)
+                            | (int) ((bit1 >>> j) & 1) << 1
+                            | (int) ((bit2 >>> j) & 1) << 2
+                            | (int) ((bit3 >>> j) & 1) << 3;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param rowOffset offset of row, -1 for row outside of board
+     * @param w         word in row
+     * @return word or 0 if it's outside of board
+     */
+    private long word(int rowOffset, int w) {
+        return rowOffset < 0 || w < 0 || w >= mWords ? 0 : mBits[rowOffset + w];
+    }
+
+    /**
+     * @param word
+     * @param previous word with lower columns
+     * @return bit j is set if field j - 1 is set
+     */
+    private static long west(long word, long previous) {
+        return (word << 1) | (previous >>> 63);
+    }
+
+    /**
+     * @param word
+     * @param next word with higher columns
+     * @return bit j is set if field j + 1 is set
+     */
+    private static long east(long word, long next) {
+        return (word >>> 1) | (next << 63);
+    }
+}
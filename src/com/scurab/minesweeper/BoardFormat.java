@@ -0,0 +1,411 @@
+package com.scurab.minesweeper;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Import/export of boards<br/>
+ * <p/>
+ * Binary format (big endian):
+ * <pre>
+ * header: int magic 'MSWB', short version, short flags, int size, int mines, int rowsPerBlock, int blocks
+ * [mask]: block with bit per field, 1 = field is part of board, only if flags contain FLAG_MASKED
+ * block:  int rawLength, int compressedLength, deflated data
+ * </pre>
+ * Flags keep shape of board, bits 0-1 square, torus or hex, bit 2 masked. Version 1 files are always square.
+ * Every field takes one nibble (bit 0 = mine, bits 1-2 = state 0 closed, 1 open, 2 flag), two fields per byte.
+ * Blocks contain whole rows and are compressed independently, so reader and writer keep only one block in memory.
+ * Adjacents are not stored, they are generated after import.
+ * <p/>
+ * There is also ASCII variant, one line per row, see {@link #toAscii(MineSweeper)}.
+ */
+public final class BoardFormat {
+
+    static final int MAGIC = ('M' << 24) | ('S' << 16) | ('W' << 8) | 'B';
+    /* 2 = topology in flags */
+    static final int VERSION = 2;
+
+    /* flags, lowest bits are kind of topology, masked board has mask block before rows */
+    static final int FLAG_KIND = 0x3;
+    static final int FLAG_MASKED = 0x4;
+
+    static final int HEADER_SIZE = 24;
+
+    /* default rows in one block */
+    static final int ROWS_PER_BLOCK = 64;
+
+    /* biggest raw length of one row block accepted by reader */
+    static final int MAX_BLOCK_LENGTH = 1 << 24;
+
+    private static final int NIBBLE_MINE = 1;
+    private static final int NIBBLE_OPEN = 1 << 1;
+    private static final int NIBBLE_FLAG = 2 << 1;
+
+    /* ascii chars for closed/open/flag fields, without and with mine */
+    private static final char[] ASCII_SAFE = {'.', 'o', 'f'};
+    private static final char[] ASCII_MINE = {'*', '@', 'F'};
+
+    private BoardFormat() {
+        //no instance
+    }
+
+    //region binary
+
+    public static void write(MineSweeper game, File file) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            write(game, fos.getChannel());
+        } finally {
+            fos.close();
+        }
+    }
+
+    public static MineSweeper read(File file, MineSweeper.MineSweeperDelegate delegate) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            return read(fis.getChannel(), delegate);
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Write game block by block
+     *
+     * @param game
+     * @param channel
+     * @throws IOException
+     */
+    public static void write(MineSweeper game, WritableByteChannel channel) throws IOException {
+        final int size = game.getSize();
+        final int blocks = (size + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+        final Topology topology = game.getTopology();
+        int flags = topology.getKind() | (topology.isMasked() ? FLAG_MASKED : 0);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort((short) VERSION).putShort((short) flags)
+                .putInt(size).putInt(game.getMines()).putInt(ROWS_PER_BLOCK).putInt(blocks);
+        header.flip();
+        writeFully(channel, header);
+
+        byte[] raw = new byte[getRawLength(size, ROWS_PER_BLOCK)];
+        byte[][] compressed = {new byte[raw.length + (raw.length >> 3) + 64]};
+        ByteBuffer blockHeader = ByteBuffer.allocate(8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            if (topology.isMasked()) {
+                byte[] mask = new byte[getMaskLength(size)];
+                for (int i = 0; i < size * size; i++) {
+                    if (topology.isActive(i)) {
+                        mask[i >> 3] |= 1 << (i & 7);
+                    }
+                }
+                writeBlock(channel, deflater, mask, mask.length, compressed, blockHeader);
+            }
+            for (int block = 0; block < blocks; block++) {
+                int firstRow = block * ROWS_PER_BLOCK;
+                int rows = Math.min(ROWS_PER_BLOCK, size - firstRow);
+                packBlock(game, firstRow * size, rows * size, raw);
+                writeBlock(channel, deflater, raw, getRawLength(size, rows), compressed, blockHeader);
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param compressed holder of output buffer, buffer is replaced if it's too small
+     */
+    private static void writeBlock(WritableByteChannel channel, Deflater deflater, byte[] raw, int rawLength,
+                                   byte[][] compressed, ByteBuffer blockHeader) throws IOException {
+        deflater.reset();
+        deflater.setInput(raw, 0, rawLength);
+        deflater.finish();
+        byte[] out = compressed[0];
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == out.length) {
+                byte[] bigger = new byte[out.length << 1];
+                System.arraycopy(out, 0, bigger, 0, compressedLength);
+                out = bigger;
+                compressed[0] = out;
+            }
+            compressedLength += deflater.deflate(out, compressedLength, out.length - compressedLength);
+        }
+
+        blockHeader.clear();
+        blockHeader.putInt(rawLength).putInt(compressedLength);
+        blockHeader.flip();
+        writeFully(channel, blockHeader);
+        writeFully(channel, ByteBuffer.wrap(out, 0, compressedLength));
+    }
+
+    /**
+     * Read game block by block
+     *
+     * @param channel
+     * @param delegate
+     * @return loaded game
+     * @throws IOException for invalid or unsupported data
+     */
+    public static MineSweeper read(ReadableByteChannel channel, MineSweeper.MineSweeperDelegate delegate) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Invalid board data!");
+        }
+        int version = header.getShort();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported version:" + version);
+        }
+        int flags = header.getShort();
+        int size = header.getInt();
+        int mines = header.getInt();
+        int rowsPerBlock = header.getInt();
+        int blocks = header.getInt();
+        //bounded size keeps size * size in int, bounded block keeps memory of reader small
+        if (size < 3 || size > Topology.MAX_SIZE || rowsPerBlock < 1
+                || (long) size * rowsPerBlock > 2L * MAX_BLOCK_LENGTH
+                || blocks != (size + rowsPerBlock - 1) / rowsPerBlock) {
+            throw new IOException("Invalid board header!");
+        }
+        //version 1 knows only square boards
+        int kind = version == 1 ? Topology.KIND_SQUARE : flags & FLAG_KIND;
+        if (kind != Topology.KIND_SQUARE && kind != Topology.KIND_TORUS && kind != Topology.KIND_HEX
+                || (flags & ~(FLAG_KIND | FLAG_MASKED)) != 0 || (version == 1 && flags != 0)) {
+            throw new IOException("Unsupported flags:" + flags);
+        }
+
+        byte[] raw = new byte[getRawLength(size, rowsPerBlock)];
+        ByteBuffer[] compressed = {ByteBuffer.allocate(getDeflateBound(raw.length))};
+        ByteBuffer blockHeader = ByteBuffer.allocate(8);
+        Inflater inflater = new Inflater();
+        try {
+            boolean[] active = null;
+            if ((flags & FLAG_MASKED) != 0) {
+                byte[] mask = new byte[getMaskLength(size)];
+                readBlock(channel, inflater, mask, mask.length, compressed, blockHeader, "mask");
+                active = new boolean[size * size];
+                for (int i = 0; i < active.length; i++) {
+                    active[i] = (mask[i >> 3] & (1 << (i & 7))) != 0;
+                }
+            }
+            //mask is handed over to topology, not copied
+            MineSweeper game = new MineSweeper(Topology.of(kind, size, active), delegate);
+            for (int block = 0; block < blocks; block++) {
+                int firstRow = block * rowsPerBlock;
+                int rows = Math.min(rowsPerBlock, size - firstRow);
+                readBlock(channel, inflater, raw, getRawLength(size, rows), compressed, blockHeader, "block " + block);
+                unpackBlock(game, firstRow * size, rows * size, raw);
+            }
+            game.onLoaded();
+            if (game.getMines() != mines) {
+                throw new IOException("Mines count mismatch!");
+            }
+            return game;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Read and inflate one block
+     *
+     * @param compressed holder of input buffer, buffer is replaced if it's too small
+     * @param name       of block for errors
+     */
+    private static void readBlock(ReadableByteChannel channel, Inflater inflater, byte[] raw, int rawLength,
+                                  ByteBuffer[] compressed, ByteBuffer blockHeader, String name) throws IOException {
+        blockHeader.clear();
+        readFully(channel, blockHeader);
+        blockHeader.flip();
+        int storedLength = blockHeader.getInt();
+        int compressedLength = blockHeader.getInt();
+        if (storedLength != rawLength || compressedLength < 0 || compressedLength > getDeflateBound(rawLength)) {
+            throw new IOException("Invalid " + name);
+        }
+        ByteBuffer in = compressed[0];
+        if (in.capacity() < compressedLength) {
+            in = ByteBuffer.allocate(compressedLength);
+            compressed[0] = in;
+        }
+        in.clear();
+        in.limit(compressedLength);
+        readFully(channel, in);
+
+        inflater.reset();
+        inflater.setInput(in.array(), 0, compressedLength);
+        try {
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished() && !inflater.needsInput()) {
+                inflated += inflater.inflate(raw, inflated, rawLength - inflated);
+            }
+            if (inflated != rawLength) {
+                throw new IOException("Corrupted " + name);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted " + name);
+        }
+    }
+
+    /**
+     * @param rawLength
+     * @return biggest possible length of deflated data, same as zlib's compressBound()
+     */
+    static int getDeflateBound(int rawLength) {
+        return rawLength + (rawLength >> 12) + (rawLength >> 14) + (rawLength >> 25) + 13;
+    }
+
+    static int getMaskLength(int size) {
+        return (size * size + 7) >> 3;
+    }
+
+    static int getRawLength(int size, int rows) {
+        return (size * rows + 1) >> 1;
+    }
+
+    private static void packBlock(MineSweeper game, int from, int count, byte[] raw) {
+        for (int i = 0; i < count; i++) {
+            int nibble = toNibble(game.getValue(from + i));
+            if ((i & 1) == 0) {
+                raw[i >> 1] = (byte) nibble;
+            } else {
+                raw[i >> 1] |= nibble << 4;
+            }
+        }
+    }
+
+    private static void unpackBlock(MineSweeper game, int from, int count, byte[] raw) throws IOException {
+        final Topology topology = game.getTopology();
+        for (int i = 0; i < count; i++) {
+            int nibble = (raw[i >> 1] >> ((i & 1) << 2)) & 0xF;
+            int value = fromNibble(nibble);
+            if (value == -1) {
+                throw new IOException("Invalid field:" + nibble);
+            }
+            //field outside of mask can't have mine or be opened, board couldn't be finished
+            if (nibble != 0 && !topology.isActive(from + i)) {
+                throw new IOException("Invalid inactive field:" + (from + i));
+            }
+            game.setValue(from + i, value);
+        }
+    }
+
+    private static int toNibble(int value) {
+        int result = MineSweeper.getData(value) == MineSweeper.DATA_MINE ? NIBBLE_MINE : 0;
+        int state = MineSweeper.getState(value);
+        if (state == MineSweeper.STATE_OPEN) {
+            result |= NIBBLE_OPEN;
+        } else if (state == MineSweeper.STATE_FLAG) {
+            result |= NIBBLE_FLAG;
+        }
+        return result;
+    }
+
+    /**
+     * @param nibble
+     * @return raw field value or -1 if nibble is not valid
+     */
+    private static int fromNibble(int nibble) {
+        int value = (nibble & NIBBLE_MINE) != 0 ? MineSweeper.DATA_MINE : 0;
+        switch (nibble & ~NIBBLE_MINE) {
+            case 0:
+                return value | MineSweeper.STATE_CLOSED;
+            case NIBBLE_OPEN:
+                return value | MineSweeper.STATE_OPEN;
+            case NIBBLE_FLAG:
+                return value | MineSweeper.STATE_FLAG;
+            default:
+                return -1;
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of board data!");
+            }
+        }
+    }
+    //endregion binary
+
+    //region ascii
+
+    /**
+     * Board as text, one line per row<br/>
+     * '.' closed, 'o' open, 'f' flag, for fields with mine '*' closed, '@' open, 'F' flag.
+     * Text has no shape, so only square boards are supported.
+     *
+     * @param game
+     * @return
+     */
+    public static String toAscii(MineSweeper game) {
+        if (!game.getTopology().isSquare()) {
+            throw new IllegalArgumentException("Only square board can be exported as text!");
+        }
+        int size = game.getSize();
+        StringBuilder sb = new StringBuilder(size * (size + 1));
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                int nibble = toNibble(game.getValue(row * size + column));
+                char[] chars = (nibble & NIBBLE_MINE) != 0 ? ASCII_MINE : ASCII_SAFE;
+                sb.append(chars[nibble >> 1]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parse board from {@link #toAscii(MineSweeper)} format, empty lines are ignored
+     *
+     * @param text
+     * @param delegate
+     * @return
+     */
+    public static MineSweeper fromAscii(String text, MineSweeper.MineSweeperDelegate delegate) {
+        String[] lines = text.trim().split("\\s*\n\\s*");
+        int size = lines.length;
+        MineSweeper game = new MineSweeper(size, delegate);
+        for (int row = 0; row < size; row++) {
+            String line = lines[row];
+            if (line.length() != size) {
+                throw new IllegalArgumentException("Board must be square, invalid row:" + row);
+            }
+            for (int column = 0; column < size; column++) {
+                char c = line.charAt(column);
+                int value = -1;
+                for (int state = 0; state < ASCII_SAFE.length; state++) {
+                    if (ASCII_SAFE[state] == c) {
+                        value = state << 1;
+                    } else if (ASCII_MINE[state] == c) {
+                        value = (state << 1) | NIBBLE_MINE;
+                    }
+                }
+                if (value == -1) {
+                    throw new IllegalArgumentException("Invalid char:'" + c + "' at " + row + "x" + column);
+                }
+                game.setValue(row * size + column, fromNibble(value));
+            }
+        }
+        game.onLoaded();
+        return game;
+    }
+    //endregion ascii
+}
@@ -0,0 +1,215 @@
+package com.scurab.minesweeper;
+
+import java.util.Random;
+
+/**
+ * Everything what determines mine layout of square board: size, mines, generator version and seed<br/>
+ * <p/>
+ * Same identity always generates same board, so saved or shared game needs only short code
+ * from {@link #toCode()} and states of fields, see {@link MineSweeper#saveStates()}.
+ * Code is Crockford's base32 with one check character, case insensitive, dashes are ignored.
+ */
+public final class BoardIdentity {
+
+    /* Current version of mine generator, see BoardRandom */
+    public static final int GENERATOR_VERSION = 1;
+
+    private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+
+    /* Prime modulus of check character */
+    private static final int CHECK_MODULUS = 31;
+
+    public final int size;
+
+    public final int mines;
+
+    public final int version;
+
+    public final long seed;
+
+    /**
+     * @param size    size of board
+     * @param mines   amount of mines
+     * @param version generator version, at most {@link #GENERATOR_VERSION}
+     * @param seed
+     */
+    public BoardIdentity(int size, int mines, int version, long seed) {
+        if (size < 3) {
+            throw new IllegalArgumentException("Size of field must be at least 3 (3x3)!");
+        }
+        if (mines < 0 || mines > size * size) {
+            throw new IllegalArgumentException("Invalid number of mines:" + mines);
+        }
+        if (version < 1 || version > GENERATOR_VERSION) {
+            throw new IllegalArgumentException("Unsupported generator version:" + version);
+        }
+        this.size = size;
+        this.mines = mines;
+        this.version = version;
+        this.seed = seed;
+    }
+
+    /**
+     * New board with random seed and current generator
+     *
+     * @param size
+     * @param mines
+     * @return
+     */
+    public static BoardIdentity random(int size, int mines) {
+        return new BoardIdentity(size, mines, GENERATOR_VERSION, new Random().nextLong());
+    }
+
+    /**
+     * @return short case insensitive code, see {@link #fromCode(String)}
+     */
+    public String toCode() {
+        byte[] bytes = new byte[3 * 5 + 8];
+        int len = 0;
+        len = writeVarInt(bytes, len, version);
+        len = writeVarInt(bytes, len, size);
+        len = writeVarInt(bytes, len, mines);
+        for (int i = 0; i < 8; i++) {
+            bytes[len++] = (byte) (seed >>> (i << 3));
+        }
+
+        StringBuilder sb = new StringBuilder(len * 8 / 5 + 2);
+        int buffer = 0;
+        int bits = 0;
+        int check = 0;
+        for (int i = 0; i < len; i++) {
+            buffer = (buffer << 8) | (bytes[i] & 0xFF);
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                check = appendChar(sb, (buffer >>> bits) & 0x1F, check);
+            }
+        }
+        if (bits > 0) {
+            check = appendChar(sb, (buffer << (5 - bits)) & 0x1F, check);
+        }
+        sb.append(ALPHABET.charAt(check % CHECK_MODULUS));
+        return sb.toString();
+    }
+
+    private static int appendChar(StringBuilder sb, int value, int check) {
+        sb.append(ALPHABET.charAt(value));
+        return check + value * sb.length();
+    }
+
+    /**
+     * @param code see {@link #toCode()}
+     * @return identity
+     * @throws IllegalArgumentException if code is not valid
+     */
+    public static BoardIdentity fromCode(String code) {
+        if (code == null) {
+            throw new IllegalArgumentException("Code can't be null!");
+        }
+        int[] values = new int[code.length()];
+        int n = 0;
+        for (int i = 0; i < code.length(); i++) {
+            char c = Character.toUpperCase(code.charAt(i));
+            if (c == '-') {
+                continue;
+            }
+            //ambiguous chars from Crockford's base32
+            if (c == 'O') {
+                c = '0';
+            } else if (c == 'I' || c == 'L') {
+                c = '1';
+            }
+            int v = ALPHABET.indexOf(c);
+            if (v < 0) {
+                throw new IllegalArgumentException("Invalid share code:" + code);
+            }
+            values[n++] = v;
+        }
+        if (n < 2) {
+            throw new IllegalArgumentException("Invalid share code:" + code);
+        }
+        int check = 0;
+        for (int i = 0; i < n - 1; i++) {
+            check += values[i] * (i + 1);
+        }
+        if (check % CHECK_MODULUS != values[n - 1]) {
+            throw new IllegalArgumentException("Invalid share code:" + code);
+        }
+
+        byte[] bytes = new byte[(n - 1) * 5 / 8];
+        int buffer = 0;
+        int bits = 0;
+        int len = 0;
+        for (int i = 0; i < n - 1; i++) {
+            buffer = (buffer << 5) | values[i];
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                bytes[len++] = (byte) (buffer >>> bits);
+            }
+        }
+
+        int[] pos = {0};
+        int version = readVarInt(bytes, pos, code);
+        int size = readVarInt(bytes, pos, code);
+        int mines = readVarInt(bytes, pos, code);
+        if (bytes.length - pos[0] != 8) {
+            throw new IllegalArgumentException("Invalid share code:" + code);
+        }
+        long seed = 0;
+        for (int i = 0; i < 8; i++) {
+            seed |= (bytes[pos[0] + i] & 0xFFL) << (i << 3);
+        }
+        return new BoardIdentity(size, mines, version, seed);
+    }
+
+    private static int writeVarInt(byte[] bytes, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static int readVarInt(byte[] bytes, int[] pos, String code) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (pos[0] >= bytes.length) {
+                break;
+            }
+            int b = bytes[pos[0]++];
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Invalid share code:" + code);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BoardIdentity)) {
+            return false;
+        }
+        BoardIdentity that = (BoardIdentity) o;
+        return size == that.size && mines == that.mines && version == that.version && seed == that.seed;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = size;
+        result = 31 * result + mines;
+        result = 31 * result + version;
+        result = 31 * result + (int) (seed ^ (seed >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toCode();
+    }
+}
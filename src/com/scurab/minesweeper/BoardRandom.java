@@ -0,0 +1,41 @@
+package com.scurab.minesweeper;
+
+/**
+ * Stable random generator for boards<br/>
+ * <p/>
+ * SplitMix64, sequence for given seed never changes, so board can be generated again from its {@link BoardIdentity}.
+ * Any change of this class or of the way how it's used for mines must go with new {@link BoardIdentity#GENERATOR_VERSION}.
+ * Not thread safe.
+ */
+final class BoardRandom {
+
+    private long mState;
+
+    BoardRandom(long seed) {
+        mState = seed;
+    }
+
+    long nextLong() {
+        long z = (mState += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param bound must be positive
+     * @return uniformly distributed value in range [0, bound)
+     */
+    int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive!");
+        }
+        int bits;
+        int value;
+        do {
+            bits = (int) (nextLong() >>> 33);
+            value = bits % bound;
+        } while (bits - value + (bound - 1) < 0);//reject incomplete last range
+        return value;
+    }
+}
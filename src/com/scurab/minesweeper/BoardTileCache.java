@@ -0,0 +1,193 @@
+package com.scurab.minesweeper;
+
+import android.graphics.Bitmap;
+
+/**
+ * Pre-rendered minimap of huge boards<br/>
+ * <p/>
+ * Board is split into {@link #TILE_CELLS} x {@link #TILE_CELLS} blocks, block of minimap bitmap
+ * is rendered again only if any of its fields changed.
+ * <p/>
+ * Cache keeps its own copy of visible state (one byte per field) updated by {@link #onCellChanged(int, int, int)},
+ * so it never touches game and can be used also with {@link GameExecutor}. Not thread safe, use on UI thread.
+ */
+public class BoardTileCache {
+
+    /* fields in one tile side */
+    public static final int TILE_CELLS = 32;
+
+    private static final int COLOR_OUTSIDE = 0xFF5A5A5A;
+    private static final int COLOR_CLOSED = 0xFFBFBFBF;
+    private static final int COLOR_FLAG = 0xFFFF0000;
+    private static final int COLOR_MINE = 0xFF000000;
+    /* open fields by amount of adjacents, last one is used for more */
+    private static final int[] COLOR_OPEN = {0xFFFFFFFF, 0xFFB8E6B5, 0xFFFFD9A8, 0xFFFFB3F2, 0xFFFF9999};
+
+    private final int mSize;
+
+    private final int mTilesPerSide;
+
+    /* visible value of every field */
+    private final byte[] mCells;
+
+    /* tiles which changed since minimap update */
+    private final boolean[] mMiniMapDirty;
+
+    private Bitmap mMiniMap;
+
+    /* pixels of one minimap tile */
+    private int[] mMiniMapPixels;
+
+    /**
+     * @param size size of board
+     */
+    public BoardTileCache(int size) {
+        mSize = size;
+        mTilesPerSide = (size + TILE_CELLS - 1) / TILE_CELLS;
+        mCells = new byte[size * size];
+        mMiniMapDirty = new boolean[mTilesPerSide * mTilesPerSide];
+        for (int i = 0; i < mCells.length; i++) {
+            mCells[i] = (byte) MineSweeper.STATE_CLOSED;
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Load state of game, closed fields don't reveal their data
+     *
+     * @param values raw values of all fields, see {@link MineSweeper#saveInstance()}
+     */
+    public void setCells(int[] values) {
+        if (values.length != mCells.length) {
+            throw new IllegalArgumentException("Invalid amount of fields!");
+        }
+        for (int i = 0; i < values.length; i++) {
+            mCells[i] = (byte) getVisibleValue(values[i]);
+        }
+        invalidateAll();
+    }
+
+    private static int getVisibleValue(int value) {
+        int state = MineSweeper.getState(value);
+        return state == MineSweeper.STATE_OPEN ? value : state;
+    }
+
+    /**
+     * Field has changed, mark its tile dirty
+     *
+     * @param row
+     * @param column
+     * @param value raw value, data is used only for opened fields
+     */
+    public void onCellChanged(int row, int column, int value) {
+        int index = row * mSize + column;
+        byte visible = (byte) getVisibleValue(value);
+        if (mCells[index] == visible) {
+            return;
+        }
+        mCells[index] = visible;
+        mMiniMapDirty[(row / TILE_CELLS) * mTilesPerSide + column / TILE_CELLS] = true;
+    }
+
+    /**
+     * Mark everything dirty
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < mMiniMapDirty.length; i++) {
+            mMiniMapDirty[i] = true;
+        }
+    }
+
+    public int getTilesPerSide() {
+        return mTilesPerSide;
+    }
+
+    private static int getColor(int value) {
+        int state = MineSweeper.getState(value);
+        if (state == MineSweeper.STATE_FLAG) {
+            return COLOR_FLAG;
+        } else if (state == MineSweeper.STATE_OPEN) {
+            int data = MineSweeper.getData(value);
+            return data == MineSweeper.DATA_MINE ? COLOR_MINE : COLOR_OPEN[Math.min(data, COLOR_OPEN.length - 1)];
+        }
+        return COLOR_CLOSED;
+    }
+
+    /**
+     * Downsampled whole board, only changed tiles are redrawn<br/>
+     * Minimap is rendered straight from fields at its own resolution.
+     * Pixel covering more fields shows the most important of them (mine, flag, number, empty, closed).
+     *
+     * @param tilePixels pixels of one tile in minimap
+     * @return minimap bitmap, owned by cache
+     */
+    public Bitmap getMiniMap(int tilePixels) {
+        int pixels = mTilesPerSide * tilePixels;
+        if (mMiniMap == null || mMiniMap.getWidth() != pixels) {
+            mMiniMap = Bitmap.createBitmap(pixels, pixels, Bitmap.Config.RGB_565);
+            mMiniMapPixels = new int[tilePixels * tilePixels];
+            for (int i = 0; i < mMiniMapDirty.length; i++) {
+                mMiniMapDirty[i] = true;
+            }
+        }
+        for (int i = 0; i < mMiniMapDirty.length; i++) {
+            if (mMiniMapDirty[i]) {
+                int tr = i / mTilesPerSide;
+                int tc = i % mTilesPerSide;
+                renderMiniMapTile(tr, tc, tilePixels);
+                mMiniMap.setPixels(mMiniMapPixels, 0, tilePixels, tc * tilePixels, tr * tilePixels, tilePixels, tilePixels);
+                mMiniMapDirty[i] = false;
+            }
+        }
+        return mMiniMap;
+    }
+
+    private void renderMiniMapTile(int tileRow, int tileColumn, int tilePixels) {
+        final int[] out = mMiniMapPixels;
+        for (int py = 0; py < tilePixels; py++) {
+            //fields covered by pixel, at least one
+            int fromRow = tileRow * TILE_CELLS + py * TILE_CELLS / tilePixels;
+            int toRow = Math.max(fromRow + 1, tileRow * TILE_CELLS + (py + 1) * TILE_CELLS / tilePixels);
+            for (int px = 0; px < tilePixels; px++) {
+                int fromColumn = tileColumn * TILE_CELLS + px * TILE_CELLS / tilePixels;
+                int toColumn = Math.max(fromColumn + 1, tileColumn * TILE_CELLS + (px + 1) * TILE_CELLS / tilePixels);
+                int color = COLOR_OUTSIDE;
+                int best = -1;
+                for (int r = fromRow; r < toRow && r < mSize; r++) {
+                    for (int c = fromColumn; c < toColumn && c < mSize; c++) {
+                        int value = mCells[r * mSize + c];
+                        int priority = getPriority(value);
+                        if (priority > best) {
+                            best = priority;
+                            color = getColor(value);
+                        }
+                    }
+                }
+                out[py * tilePixels + px] = color;
+            }
+        }
+    }
+
+    /**
+     * @param value visible value of field
+     * @return how important field is in downsampled view
+     */
+    private static int getPriority(int value) {
+        int state = MineSweeper.getState(value);
+        if (state == MineSweeper.STATE_FLAG) {
+            return 3 + COLOR_OPEN.length;
+        } else if (state == MineSweeper.STATE_OPEN) {
+            int data = MineSweeper.getData(value);
+            return data == MineSweeper.DATA_MINE ? 4 + COLOR_OPEN.length : 1 + Math.min(data, COLOR_OPEN.length - 1);
+        }
+        return 0;
+    }
+
+    /**
+     * Drop bitmap, it's not recycled as views can still reference it
+     */
+    public void release() {
+        mMiniMap = null;
+        mMiniMapPixels = null;
+    }
+}
@@ -0,0 +1,40 @@
+package com.scurab.minesweeper;
+
+/**
+ * Set of changed fields delivered to UI in one go (undo/redo)<br/>
+ * Values are raw field values, use {@link MineSweeper#getData(int)} and {@link MineSweeper#getState(int)} to decode them
+ */
+public final class CellBatch {
+
+    private final int[] mIndexes;
+
+    private final int[] mValues;
+
+    CellBatch(int[] indexes, int[] values) {
+        if (indexes.length != values.length) {
+            throw new IllegalArgumentException("Indexes and values must have same length!");
+        }
+        mIndexes = indexes;
+        mValues = values;
+    }
+
+    public int size() {
+        return mIndexes.length;
+    }
+
+    /**
+     * @param i
+     * @return index of field in game, row = index / size, column = index % size
+     */
+    public int getIndex(int i) {
+        return mIndexes[i];
+    }
+
+    /**
+     * @param i
+     * @return raw value of field after change
+     */
+    public int getValue(int i) {
+        return mValues[i];
+    }
+}
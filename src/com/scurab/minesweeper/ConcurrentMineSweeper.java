@@ -0,0 +1,205 @@
+package com.scurab.minesweeper;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Thread safe variant of {@link MineSweeper} for co-op play on one board<br/>
+ * <p/>
+ * Every state transition (CLOSED -> OPEN, CLOSED <-> FLAG) is one CAS on the field,
+ * only the winning thread notifies delegate, so every field is opened and reported exactly once.
+ * Floods claim fields one by one by the same CAS, floods in different areas never touch same fields
+ * and run fully in parallel, overlapping floods just split the area between them.
+ * <p/>
+ * Delegate is called from the thread which made the move, so it has to be thread safe.
+ */
+public class ConcurrentMineSweeper {
+
+    private final AtomicIntegerArray mMineField;
+
+    private final int mSize;
+
+    private final Topology mTopology;
+
+    private final int mMines;
+
+    private final MineSweeper.MineSweeperDelegate mDelegate;
+
+    /* Amount of opened fields */
+    private final AtomicInteger mOpened = new AtomicInteger();
+
+    public ConcurrentMineSweeper(int size, int mines, MineSweeper.MineSweeperDelegate delegate) {
+        this(size, mines, Topology.square(size), delegate);
+    }
+
+    public ConcurrentMineSweeper(int size, int mines, Topology topology, MineSweeper.MineSweeperDelegate delegate) {
+        this(topology, new MineSweeper(size, mines, topology, new SilentDelegate()).saveInstance(), delegate);
+    }
+
+    /**
+     * Create game from already existing data, see {@link MineSweeper#saveInstance()}
+     *
+     * @param size
+     * @param data
+     * @param delegate
+     */
+    ConcurrentMineSweeper(int size, int[] data, MineSweeper.MineSweeperDelegate delegate) {
+        this(Topology.square(size), data, delegate);
+    }
+
+    ConcurrentMineSweeper(Topology topology, int[] data, MineSweeper.MineSweeperDelegate delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate can't be null!");
+        }
+        int size = topology.getSize();
+        if (data.length != size * size) {
+            throw new IllegalArgumentException("Data size doesn't match size of field!");
+        }
+        mDelegate = delegate;
+        mSize = size;
+        mTopology = topology;
+        mMineField = new AtomicIntegerArray(data);
+        int mines = 0;
+        int opened = 0;
+        for (int v : data) {
+            if (MineSweeper.getData(v) == MineSweeper.DATA_MINE) {
+                mines++;
+            }
+            if (MineSweeper.getState(v) == MineSweeper.STATE_OPEN) {
+                opened++;
+            }
+        }
+        mMines = mines;
+        mOpened.set(opened);
+    }
+
+    /**
+     * Open field by user
+     *
+     * @param row
+     * @param column
+     */
+    public void onStep(int row, int column) {
+        int index = row * mSize + column;
+        int data = MineSweeper.getData(mMineField.get(index));
+        if (!mTopology.isActive(index) || !tryOpen(index, data)) {
+            return;
+        }
+        if (data == MineSweeper.DATA_MINE) {
+            mDelegate.onMineStep(row, column);
+        } else {
+            mDelegate.onSaveStep(row, column, data);
+            if (data == 0) {
+                onZeroStep(index);
+            }
+        }
+    }
+
+    /**
+     * Flag or unflag field
+     *
+     * @param row
+     * @param column
+     */
+    public void onFlag(int row, int column) {
+        int index = row * mSize + column;
+        if (!mTopology.isActive(index)) {
+            return;
+        }
+        while (true) {
+            int value = mMineField.get(index);
+            int data = MineSweeper.getData(value);
+            int state = MineSweeper.getState(value);
+            if (state == MineSweeper.STATE_FLAG) {
+                if (mMineField.compareAndSet(index, value, data | MineSweeper.STATE_CLOSED)) {
+                    mDelegate.onReset(row, column);
+                    return;
+                }
+            } else if (state == MineSweeper.STATE_CLOSED) {
+                if (mMineField.compareAndSet(index, value, data | MineSweeper.STATE_FLAG)) {
+                    mDelegate.onShowFlag(row, column);
+                    return;
+                }
+            } else {
+                return;//already opened
+            }
+            //somebody else was faster, evaluate again
+        }
+    }
+
+    /**
+     * Claim field, only one thread can succeed
+     *
+     * @param index
+     * @param data
+     * @return true if field was closed and this call opened it
+     */
+    private boolean tryOpen(int index, int data) {
+        if (mMineField.compareAndSet(index, data | MineSweeper.STATE_CLOSED, data | MineSweeper.STATE_OPEN)) {
+            mOpened.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Open all connected zero fields, same rules as {@link MineSweeper#onZeroStep(int, int)}
+     *
+     * @param start
+     */
+    private void onZeroStep(int start) {
+        //called from many threads, buffer is local
+        final int[] around = new int[Topology.MAX_NEIGHBOURS];
+        IntList bfs = new IntList();
+        bfs.add(start);
+        for (int pos = 0; pos < bfs.size(); pos++) {
+            int index = bfs.get(pos);
+            for (int i = 0, n = mTopology.getNeighbours(index, around); i < n; i++) {
+                int adjIndex = around[i];
+                //only zero fields are opened by flood
+                if (mMineField.get(adjIndex) == MineSweeper.STATE_CLOSED && tryOpen(adjIndex, 0)) {
+                    mDelegate.onSaveStep(adjIndex / mSize, adjIndex % mSize, 0);
+                    bfs.add(adjIndex);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param index
+     * @return raw value of field
+     */
+    public int getValue(int index) {
+        return mMineField.get(index);
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    public Topology getTopology() {
+        return mTopology;
+    }
+
+    public int getMines() {
+        return mMines;
+    }
+
+    /**
+     * @return amount of opened fields
+     */
+    public int getOpenedCount() {
+        return mOpened.get();
+    }
+
+    /**
+     * @return copy of current state, same format as {@link MineSweeper#saveInstance()}
+     */
+    int[] saveInstance() {
+        int[] result = new int[mMineField.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = mMineField.get(i);
+        }
+        return result;
+    }
+}
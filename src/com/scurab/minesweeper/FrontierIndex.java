@@ -0,0 +1,124 @@
+package com.scurab.minesweeper;
+
+/**
+ * Incremental index of the boundary between opened and not opened fields<br/>
+ * <p/>
+ * Frontier contains every not opened (closed or flagged) field with at least one opened neighbour.
+ * For every field there are also counters of opened, unresolved (closed, not flagged) and flagged neighbours.
+ * Index is updated by {@link #onStateChanged(int, int, int)} in O(neighbours) for every changed field.
+ * Game creates it only on first frontier query, about 11 bytes per field.
+ */
+class FrontierIndex {
+
+    private final MineSweeper mGame;
+
+    private final Topology mTopology;
+
+    private final byte[] mOpenAround;
+    private final byte[] mClosedAround;
+    private final byte[] mFlagsAround;
+
+    private final IndexedIntSet mFrontier;
+
+    private final int[] mAround = new int[Topology.MAX_NEIGHBOURS];
+
+    FrontierIndex(MineSweeper game, Topology topology) {
+        int fields = topology.getSize() * topology.getSize();
+        mGame = game;
+        mTopology = topology;
+        mOpenAround = new byte[fields];
+        mClosedAround = new byte[fields];
+        mFlagsAround = new byte[fields];
+        mFrontier = new IndexedIntSet(fields);
+    }
+
+    /**
+     * Update index for one changed field
+     *
+     * @param index
+     * @param oldState
+     * @param newState
+     */
+    void onStateChanged(int index, int oldState, int newState) {
+        if (oldState == newState) {
+            return;
+        }
+        final int[] around = mAround;
+        for (int i = 0, n = mTopology.getNeighbours(index, around); i < n; i++) {
+            int adjIndex = around[i];
+            count(adjIndex, oldState, -1);
+            count(adjIndex, newState, 1);
+            updateFrontier(adjIndex, mGame.getFieldState(adjIndex));
+        }
+        updateFrontier(index, newState);
+    }
+
+    /**
+     * Recalculate everything from scratch, call after bulk change of game
+     */
+    void rebuild() {
+        int fields = mOpenAround.length;
+        for (int i = 0; i < fields; i++) {
+            mOpenAround[i] = 0;
+            mClosedAround[i] = 0;
+            mFlagsAround[i] = 0;
+        }
+        mFrontier.clear();
+        final int[] around = mAround;
+        for (int index = 0; index < fields; index++) {
+            int state = mGame.getFieldState(index);
+            for (int i = 0, n = mTopology.getNeighbours(index, around); i < n; i++) {
+                count(around[i], state, 1);
+            }
+        }
+        for (int index = 0; index < fields; index++) {
+            updateFrontier(index, mGame.getFieldState(index));
+        }
+    }
+
+    private void count(int index, int state, int diff) {
+        if (state == MineSweeper.STATE_OPEN) {
+            mOpenAround[index] += diff;
+        } else if (state == MineSweeper.STATE_FLAG) {
+            mFlagsAround[index] += diff;
+        } else {
+            mClosedAround[index] += diff;
+        }
+    }
+
+    private void updateFrontier(int index, int state) {
+        if (state != MineSweeper.STATE_OPEN && mOpenAround[index] > 0) {
+            mFrontier.add(index);
+        } else {
+            mFrontier.remove(index);
+        }
+    }
+
+    int size() {
+        return mFrontier.size();
+    }
+
+    /**
+     * @param i position in range [0, size)
+     * @return index of field
+     */
+    int get(int i) {
+        return mFrontier.get(i);
+    }
+
+    boolean contains(int index) {
+        return mFrontier.contains(index);
+    }
+
+    int getClosedAround(int index) {
+        return mClosedAround[index];
+    }
+
+    int getFlagsAround(int index) {
+        return mFlagsAround[index];
+    }
+
+    int getOpenAround(int index) {
+        return mOpenAround[index];
+    }
+}
@@ -0,0 +1,278 @@
+package com.scurab.minesweeper;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+/**
+ * Actor style owner of {@link MineSweeper}<br/>
+ * <p/>
+ * Game lives only on one background thread, every input is queued there as a command.
+ * All delegate callbacks caused by one command are recorded into one {@link UiDiff}
+ * which is posted back and replayed on UI thread, so game doesn't need any lock
+ * and UI thread only applies diffs.
+ * UI thread keeps states of fields from applied diffs, so saving never waits for game thread.
+ * <p/>
+ * All public methods have to be called from UI thread.
+ */
+class GameExecutor {
+
+    public interface OnResultListener {
+        void onResult(boolean result);
+    }
+
+    /* Command executed on game thread */
+    private static abstract class Command {
+        abstract boolean run(MineSweeper game);
+    }
+
+    private final HandlerThread mThread;
+
+    private final Handler mWorker;
+
+    private final Handler mMain;
+
+    private final MineSweeper.MineSweeperDelegate mUiDelegate;
+
+    private final LatencyStats mLatencyStats = new LatencyStats(512);
+
+    /* accessed only on UI thread */
+    private int mGeneration;
+    /* states of fields as shown by applied diffs */
+    private int[] mStates;
+
+    /* accessed only on game thread */
+    private MineSweeper mGame;
+    private UiDiff mDiff;
+
+    /* Game delegate, just forwards to diff of current command */
+    private final MineSweeper.MineSweeperDelegate mGameDelegate = new MineSweeper.MineSweeperDelegate() {
+        @Override
+        public void onSaveStep(int row, int column, int adjacents) {
+            mDiff.onSaveStep(row, column, adjacents);
+        }
+
+        @Override
+        public void onMineStep(int row, int column) {
+            mDiff.onMineStep(row, column);
+        }
+
+        @Override
+        public void onShowFlag(int row, int column) {
+            mDiff.onShowFlag(row, column);
+        }
+
+        @Override
+        public void onShowHelp(int row, int column, int data) {
+            mDiff.onShowHelp(row, column, data);
+        }
+
+        @Override
+        public void onReset(int row, int column) {
+            mDiff.onReset(row, column);
+        }
+
+        @Override
+        public void onBatchUpdate(CellBatch batch) {
+            mDiff.onBatchUpdate(batch);
+        }
+    };
+
+    /**
+     * @param uiDelegate delegate called on UI thread when diff is applied
+     */
+    GameExecutor(MineSweeper.MineSweeperDelegate uiDelegate) {
+        if (uiDelegate == null) {
+            throw new IllegalArgumentException("Delegate can't be null!");
+        }
+        mUiDelegate = uiDelegate;
+        mMain = new Handler(Looper.getMainLooper());
+        mThread = new HandlerThread("GameExecutor");
+        mThread.start();
+        mWorker = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Start new game, pending diffs of previous game are ignored
+     *
+     * @param identity board to generate
+     */
+    void newGame(final BoardIdentity identity) {
+        mGeneration++;
+        mStates = new int[identity.size * identity.size];
+        mWorker.post(new Runnable() {
+            @Override
+            public void run() {
+                mGame = new MineSweeper(identity, mGameDelegate);
+            }
+        });
+    }
+
+    /**
+     * Continue in existing game, see {@link MineSweeper#saveInstance()}
+     *
+     * @param size
+     * @param data
+     */
+    void loadGame(final int size, final int[] data) {
+        mGeneration++;
+        mStates = copyStates(data);
+        mWorker.post(new Runnable() {
+            @Override
+            public void run() {
+                mGame = new MineSweeper(size, data, mGameDelegate);
+            }
+        });
+    }
+
+    void onStep(final int row, final int column) {
+        execute(new Command() {
+            @Override
+            boolean run(MineSweeper game) {
+                game.onStep(row, column);
+                return false;
+            }
+        }, null);
+    }
+
+    void onFlag(final int row, final int column) {
+        execute(new Command() {
+            @Override
+            boolean run(MineSweeper game) {
+                game.onFlag(row, column);
+                return false;
+            }
+        }, null);
+    }
+
+    void onChord(final int row, final int column) {
+        execute(new Command() {
+            @Override
+            boolean run(MineSweeper game) {
+                game.onChord(row, column);
+                return false;
+            }
+        }, null);
+    }
+
+    void undo() {
+        execute(new Command() {
+            @Override
+            boolean run(MineSweeper game) {
+                return game.undo();
+            }
+        }, null);
+    }
+
+    void redo() {
+        execute(new Command() {
+            @Override
+            boolean run(MineSweeper game) {
+                return game.redo();
+            }
+        }, null);
+    }
+
+    void showCheat(final boolean cheating) {
+        execute(new Command() {
+            @Override
+            boolean run(MineSweeper game) {
+                game.showCheat(cheating);
+                return false;
+            }
+        }, null);
+    }
+
+    /**
+     * @param listener called on UI thread after diff is applied
+     */
+    void finishGame(OnResultListener listener) {
+        execute(new Command() {
+            @Override
+            boolean run(MineSweeper game) {
+                return game.finishGame();
+            }
+        }, listener);
+    }
+
+    void restoreInstance(final int[] data) {
+        mStates = copyStates(data);
+        execute(new Command() {
+            @Override
+            boolean run(MineSweeper game) {
+                game.restoreInstance(data);
+                return false;
+            }
+        }, null);
+    }
+
+    /**
+     * States of fields as shown on UI, doesn't wait for game thread, commands without applied diff are not included
+     *
+     * @return see {@link MineSweeper#saveStates()}
+     */
+    int[] saveStates() {
+        return MineSweeper.saveStates(mStates);
+    }
+
+    private static int[] copyStates(int[] data) {
+        int[] result = new int[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = data[i] & MineSweeper.MASK_STATE;
+        }
+        return result;
+    }
+
+    /**
+     * @return metrics from input to applied diff on UI thread
+     */
+    LatencyStats getLatencyStats() {
+        return mLatencyStats;
+    }
+
+    /**
+     * Stop game thread, pending commands are dropped
+     */
+    void quit() {
+        mGeneration++;
+        mThread.quit();
+    }
+
+    private void execute(final Command command, final OnResultListener listener) {
+        final long inputTime = System.nanoTime();
+        final int generation = mGeneration;
+        mWorker.post(new Runnable() {
+            @Override
+            public void run() {
+                final UiDiff diff = new UiDiff();
+                diff.inputTime = inputTime;
+                diff.generation = generation;
+                mDiff = diff;
+                diff.result = command.run(mGame);
+                mDiff = null;
+                diff.captureStates(mGame);
+                if (diff.isEmpty() && listener == null) {
+                    return;
+                }
+                mMain.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyDiff(diff, listener);
+                    }
+                });
+            }
+        });
+    }
+
+    private void applyDiff(UiDiff diff, OnResultListener listener) {
+        if (diff.generation != mGeneration) {
+            return;//diff of old game
+        }
+        diff.applyStates(mStates);
+        diff.apply(mUiDelegate);
+        mLatencyStats.add(System.nanoTime() - diff.inputTime);
+        if (listener != null) {
+            listener.onResult(diff.result);
+        }
+    }
+}
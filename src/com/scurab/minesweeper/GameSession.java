@@ -0,0 +1,152 @@
+package com.scurab.minesweeper;
+
+/**
+ * One headless game<br/>
+ * Not thread safe, session is always accessed only by its partition thread in {@link SessionServer}
+ */
+class GameSession implements MineSweeper.MineSweeperDelegate {
+
+    private final long mId;
+
+    private final int mSize;
+
+    /* Live game, null if session is compacted */
+    private MineSweeper mMineSweeper;
+
+    /* Identity of compacted board, mines are generated again from it */
+    private BoardIdentity mIdentity;
+
+    /* Packed states of compacted session, see MineSweeper#saveStates() */
+    private int[] mStates;
+
+    /* Events of current request */
+    private final IntList mEvents = new IntList();
+
+    private boolean mAlive = true;
+
+    private long mLastAccess;
+
+    GameSession(long id, int size, int mines) {
+        mId = id;
+        mSize = size;
+        mMineSweeper = new MineSweeper(size, mines, this);
+        mLastAccess = System.nanoTime();
+    }
+
+    long getId() {
+        return mId;
+    }
+
+    long getLastAccess() {
+        return mLastAccess;
+    }
+
+    boolean isCompacted() {
+        return mMineSweeper == null;
+    }
+
+    /**
+     * Replace live game by its identity and states of fields (2 bits per field), undo history is dropped
+     */
+    void compact() {
+        if (mMineSweeper == null) {
+            return;
+        }
+        mIdentity = mMineSweeper.getIdentity();
+        mStates = mMineSweeper.saveStates();
+        mMineSweeper = null;
+    }
+
+    private MineSweeper getGame() {
+        if (mMineSweeper == null) {
+            mMineSweeper = new MineSweeper(mIdentity, this);
+            mMineSweeper.restoreStates(mStates);
+            mIdentity = null;
+            mStates = null;
+        }
+        return mMineSweeper;
+    }
+
+    SessionResponse execute(SessionRequest request) {
+        mLastAccess = System.nanoTime();
+        mEvents.clear();
+        if (request.row < 0 || request.row >= mSize || request.column < 0 || request.column >= mSize) {
+            throw new IllegalArgumentException("Invalid position:" + request.row + "x" + request.column);
+        }
+        MineSweeper game = getGame();
+        byte[] board = null;
+        switch (request.type) {
+            case SessionRequest.TYPE_STEP:
+                if (mAlive) {
+                    game.onStep(request.row, request.column);
+                }
+                break;
+            case SessionRequest.TYPE_FLAG:
+                if (mAlive) {
+                    game.onFlag(request.row, request.column);
+                }
+                break;
+            case SessionRequest.TYPE_CHORD:
+                if (mAlive) {
+                    game.onChord(request.row, request.column);
+                }
+                break;
+            case SessionRequest.TYPE_STATE:
+                board = getVisibleBoard(game);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown request type:" + request.type);
+        }
+        return new SessionResponse(mEvents.toArray(), board, mAlive);
+    }
+
+    private static byte[] getVisibleBoard(MineSweeper game) {
+        int[] data = game.saveInstance();
+        byte[] result = new byte[data.length];
+        for (int i = 0; i < data.length; i++) {
+            int v = data[i];
+            //don't reveal closed fields
+            result[i] = (byte) (MineSweeper.getState(v) == MineSweeper.STATE_OPEN ? v : MineSweeper.getState(v));
+        }
+        return result;
+    }
+
+    private void addEvent(int event, int row, int column, int data) {
+        mEvents.add(event);
+        mEvents.add(row * mSize + column);
+        mEvents.add(data);
+    }
+
+    //region delegate
+    @Override
+    public void onSaveStep(int row, int column, int adjacents) {
+        addEvent(SessionResponse.EVENT_SAVE_STEP, row, column, adjacents);
+    }
+
+    @Override
+    public void onMineStep(int row, int column) {
+        mAlive = false;
+        addEvent(SessionResponse.EVENT_MINE_STEP, row, column, MineSweeper.DATA_MINE);
+    }
+
+    @Override
+    public void onShowFlag(int row, int column) {
+        addEvent(SessionResponse.EVENT_FLAG, row, column, 0);
+    }
+
+    @Override
+    public void onShowHelp(int row, int column, int data) {
+        //no cheating in headless games
+    }
+
+    @Override
+    public void onReset(int row, int column) {
+        addEvent(SessionResponse.EVENT_RESET, row, column, 0);
+    }
+
+    @Override
+    public void onBatchUpdate(CellBatch batch) {
+        //undo is not exposed in headless games
+    }
+    //endregion delegate
+}
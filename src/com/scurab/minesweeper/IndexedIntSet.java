@@ -0,0 +1,79 @@
+package com.scurab.minesweeper;
+
+/**
+ * Set of ints in range [0, capacity) with O(1) add, remove, contains and random access<br/>
+ * Values are kept in dense array, position map allows swap-remove.
+ * Order of values is not stable, removing swaps last value into the free place.
+ */
+class IndexedIntSet {
+
+    private final int[] mValues;
+
+    /* position + 1 of value in mValues, 0 if value is not present */
+    private final int[] mPositions;
+
+    private int mSize;
+
+    IndexedIntSet(int capacity) {
+        mValues = new int[capacity];
+        mPositions = new int[capacity];
+    }
+
+    /**
+     * @param value
+     * @return true if value was not present
+     */
+    boolean add(int value) {
+        if (mPositions[value] != 0) {
+            return false;
+        }
+        mValues[mSize] = value;
+        mPositions[value] = ++mSize;
+        return true;
+    }
+
+    /**
+     * @param value
+     * @return true if value was present
+     */
+    boolean remove(int value) {
+        int pos = mPositions[value] - 1;
+        if (pos < 0) {
+            return false;
+        }
+        int last = mValues[--mSize];
+        mValues[pos] = last;
+        mPositions[last] = pos + 1;
+        mPositions[value] = 0;
+        return true;
+    }
+
+    boolean contains(int value) {
+        return mPositions[value] != 0;
+    }
+
+    /**
+     * @param i position in range [0, size)
+     * @return value at position
+     */
+    int get(int i) {
+        if (i >= mSize) {
+            throw new IndexOutOfBoundsException("Index:" + i + " size:" + mSize);
+        }
+        return mValues[i];
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Remove all values, O(size)
+     */
+    void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mPositions[mValues[i]] = 0;
+        }
+        mSize = 0;
+    }
+}
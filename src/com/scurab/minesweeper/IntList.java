@@ -0,0 +1,49 @@
+package com.scurab.minesweeper;
+
+/**
+ * Growable list of primitive ints, avoids boxing for big floods
+ */
+class IntList {
+
+    private int[] mData;
+
+    private int mSize;
+
+    IntList() {
+        this(16);
+    }
+
+    IntList(int capacity) {
+        mData = new int[Math.max(capacity, 1)];
+    }
+
+    void add(int value) {
+        if (mSize == mData.length) {
+            int[] data = new int[mSize << 1];
+            System.arraycopy(mData, 0, data, 0, mSize);
+            mData = data;
+        }
+        mData[mSize++] = value;
+    }
+
+    int get(int index) {
+        return mData[index];
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * @return copy of current values
+     */
+    int[] toArray() {
+        int[] result = new int[mSize];
+        System.arraycopy(mData, 0, result, 0, mSize);
+        return result;
+    }
+}
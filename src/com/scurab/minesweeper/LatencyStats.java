@@ -0,0 +1,73 @@
+package com.scurab.minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * Latency metrics over last N samples<br/>
+ * Not thread safe
+ */
+public class LatencyStats {
+
+    private final long[] mSamples;
+
+    private long mCount;
+
+    private long mMax;
+
+    public LatencyStats(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive!");
+        }
+        mSamples = new long[capacity];
+    }
+
+    /**
+     * @param nanos
+     */
+    public void add(long nanos) {
+        mSamples[(int) (mCount % mSamples.length)] = nanos;
+        mCount++;
+        mMax = Math.max(mMax, nanos);
+    }
+
+    /**
+     * @return amount of all samples
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return max of all samples in nanos
+     */
+    public long getMax() {
+        return mMax;
+    }
+
+    /**
+     * @param percentile in range [0, 100]
+     * @return percentile of last samples in nanos, 0 if there is no sample
+     */
+    public long getPercentile(double percentile) {
+        int n = (int) Math.min(mCount, mSamples.length);
+        if (n == 0) {
+            return 0;
+        }
+        long[] sorted = new long[n];
+        System.arraycopy(mSamples, 0, sorted, 0, n);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100d * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, index))];
+    }
+
+    public void reset() {
+        mCount = 0;
+        mMax = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n:%d p50:%.2fms p99:%.2fms max:%.2fms", mCount,
+                getPercentile(50) / 1e6, getPercentile(99) / 1e6, mMax / 1e6);
+    }
+}
@@ -3,8 +3,10 @@ package com.scurab.minesweeper;
 import android.app.Activity;
 import android.os.Bundle;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.ImageButton;
+import android.widget.ScrollView;
 import android.widget.Toast;
 import android.widget.ToggleButton;
 
@@ -15,10 +17,14 @@ import android.widget.ToggleButton;
  */
 public class MainActivity extends Activity implements PlayArea.OnFinishGameListener {
 
+    private ScrollView mScroll;
     private PlayArea mPlayArea;
+    private MiniMapView mMiniMap;
     private Button mNewGame;
     private ImageButton mValidation;
     private ToggleButton mCheat;
+    private Button mUndo;
+    private Button mRedo;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -29,14 +35,42 @@ public class MainActivity extends Activity implements PlayArea.OnFinishGameListe
     }
 
     private void init() {
+        mScroll = (ScrollView) findViewById(R.id.scroll);
         mPlayArea = (PlayArea) findViewById(R.id.play_area);
+        mMiniMap = (MiniMapView) findViewById(R.id.mini_map);
         mNewGame = (Button) findViewById(R.id.new_game);
         mValidation = (ImageButton) findViewById(R.id.validate);
         mCheat = (ToggleButton) findViewById(R.id.cheat);
+        mUndo = (Button) findViewById(R.id.undo);
+        mRedo = (Button) findViewById(R.id.redo);
     }
 
     private void bind() {
         mPlayArea.setOnFinishGameListener(this);
+        if (mPlayArea.getAreaSize() >= MiniMapView.MIN_BOARD_SIZE) {
+            mPlayArea.setMiniMap(mMiniMap);
+            mMiniMap.setOnNavigateListener(new MiniMapView.OnNavigateListener() {
+                @Override
+                public void onNavigate(int row, int column) {
+                    onMiniMapNavigate(row);
+                }
+            });
+            //ScrollView has no own scroll listener before API 23
+            mScroll.getViewTreeObserver().addOnScrollChangedListener(new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    onPlayAreaScroll();
+                }
+            });
+            mScroll.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+                @Override
+                public void onGlobalLayout() {
+                    onPlayAreaScroll();
+                }
+            });
+        } else {
+            mMiniMap.setVisibility(View.GONE);
+        }
 
         mNewGame.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -57,6 +91,20 @@ public class MainActivity extends Activity implements PlayArea.OnFinishGameListe
                 onValidate();
             }
         });
+
+        mUndo.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                mPlayArea.undo();
+            }
+        });
+
+        mRedo.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                mPlayArea.redo();
+            }
+        });
     }
 
     public void onValidate() {
@@ -69,6 +117,15 @@ public class MainActivity extends Activity implements PlayArea.OnFinishGameListe
         mValidation.setImageResource(R.drawable.smile_happy);
     }
 
+    public void onMiniMapNavigate(int row) {
+        View rowView = (View) mPlayArea.getPlayButton(row, 0).getParent();
+        mScroll.smoothScrollTo(0, mPlayArea.getTop() + rowView.getTop());
+    }
+
+    private void onPlayAreaScroll() {
+        mPlayArea.setVisibleArea(mScroll.getScrollY() - mPlayArea.getTop(), mScroll.getHeight());
+    }
+
     public void onCheatClick(boolean show) {
         mPlayArea.showCheat(show);
     }
@@ -1,8 +1,5 @@
 package com.scurab.minesweeper;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Random;
 
 /**
@@ -63,9 +60,20 @@ public class MineSweeper {
          * @param column
          */
         void onReset(int row, int column);
+
+        /**
+         * Many fields changed at once (undo/redo), refresh them in one pass
+         *
+         * @param batch
+         */
+        void onBatchUpdate(CellBatch batch);
     }
 
-    private Random mRandom = new Random(System.currentTimeMillis());
+    /* Generator of mines, continues for random picks after generation */
+    private BoardRandom mRandom;
+
+    /* Identity of generated square board, null if game was loaded from data */
+    private BoardIdentity mIdentity;
 
     /* Mines in game */
     private int mMines = 10;
@@ -76,31 +84,152 @@ public class MineSweeper {
     /* Current size which means sqrt(buttons) */
     private int mSize;
 
+    /* Shape of board and adjacency of fields */
+    private final Topology mTopology;
+
     /* Delegate for events */
     private final MineSweeperDelegate mDelegate;
 
+    /* Undo/redo history */
+    private final MoveHistory mHistory = new MoveHistory(MoveHistory.DEFAULT_MAX_MEMORY);
+
+    /* Fields changed by current move */
+    private final IntList mMoveCells = new IntList();
+
+    /* Boundary between opened and not opened fields, null till first frontier query */
+    private FrontierIndex mFrontier;
+
+    /* Closed not flagged fields, safe ones first then mines, for O(1) random pick, null till first query */
+    private SplitIntSet mClosed;
+
+    /* Neighbours buffer for counting and flood */
+    private final int[] mAround = new int[Topology.MAX_NEIGHBOURS];
 
     public MineSweeper(int size, int mines, MineSweeperDelegate delegate) {
-        if (delegate == null) {
-            throw new IllegalArgumentException("Delegate can't be null!");
+        this(size, mines, Topology.square(size), delegate);
+    }
+
+    /**
+     * Create new game with custom shape of board
+     *
+     * @param size     must be same as {@link Topology#getSize()}
+     * @param mines
+     * @param topology
+     * @param delegate
+     */
+    public MineSweeper(int size, int mines, Topology topology, MineSweeperDelegate delegate) {
+        this(topology, BoardIdentity.random(size, mines), delegate);
+    }
+
+    /**
+     * Create again game given by identity, e.g. from share code
+     *
+     * @param identity
+     * @param delegate
+     */
+    public MineSweeper(BoardIdentity identity, MineSweeperDelegate delegate) {
+        this(Topology.square(identity.size), identity, delegate);
+    }
+
+    private MineSweeper(Topology topology, BoardIdentity identity, MineSweeperDelegate delegate) {
+        this(topology, delegate);
+        if (identity.size != topology.getSize()) {
+            throw new IllegalArgumentException("Size doesn't match topology!");
+        }
+        if (identity.mines > topology.getActiveCount()) {
+            throw new IllegalArgumentException("Number of mines can't be bigger then size!");
         }
-        if (size < 3) {
-            throw new IllegalArgumentException("Size of field must be at least 3 (3x3)!");
+        mMines = identity.mines;
+        mRandom = new BoardRandom(identity.seed);
+        //identity describes only square boards
+        mIdentity = topology.isSquare() ? identity : null;
+
+        initArea(mMines);
+        generateAdjacents();
+        rebuildIndexes();
+    }
+
+    /**
+     * Create game from already existing data, see {@link #saveInstance()}
+     *
+     * @param size
+     * @param data
+     * @param delegate
+     */
+    MineSweeper(int size, int[] data, MineSweeperDelegate delegate) {
+        this(Topology.square(size), data, delegate);
+    }
+
+    MineSweeper(Topology topology, int[] data, MineSweeperDelegate delegate) {
+        this(topology, delegate);
+        if (data.length != mMineField.length) {
+            throw new IllegalArgumentException("Data size doesn't match size of field!");
         }
-        if (mines < 0) {
-            throw new IllegalArgumentException("Number of mines can't be negative!");
+        System.arraycopy(data, 0, mMineField, 0, data.length);
+        countMines();
+        rebuildIndexes();
+    }
+
+    /**
+     * Create empty game without any mine, fill it by {@link #setValue(int, int)} and finish by {@link #onLoaded()}
+     *
+     * @param size
+     * @param delegate
+     */
+    MineSweeper(int size, MineSweeperDelegate delegate) {
+        this(Topology.square(size), delegate);
+    }
+
+    MineSweeper(Topology topology, MineSweeperDelegate delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate can't be null!");
         }
-        int squareSize = size * size;
-        if (mines > squareSize) {
-            throw new IllegalArgumentException("Number of mines can't be bigger then size!");
+        if (topology == null) {
+            throw new IllegalArgumentException("Topology can't be null!");
         }
         mDelegate = delegate;
-        mSize = size;
+        mTopology = topology;
+        mRandom = new BoardRandom(new Random().nextLong());
+        mSize = topology.getSize();
+        mMineField = new int[mSize * mSize];
+    }
+
+    private void countMines() {
+        int mines = 0;
+        for (int v : mMineField) {
+            if ((v & MASK_DATA) == DATA_MINE) {
+                mines++;
+            }
+        }
         mMines = mines;
-        mMineField = new int[squareSize];
+    }
 
-        initArea(mMines);
+    /**
+     * Finish game filled by {@link #setValue(int, int)}, only mines and states are expected, adjacents are generated
+     */
+    void onLoaded() {
+        countMines();
         generateAdjacents();
+        mHistory.clear();
+        rebuildIndexes();
+    }
+
+    /**
+     * @param index
+     * @return raw value of field
+     */
+    int getValue(int index) {
+        return mMineField[index];
+    }
+
+    /**
+     * Set raw value of field, no validation, no UI notification
+     *
+     * @param index
+     * @param value
+     */
+    void setValue(int index, int value) {
+        mMineField[index] = value;
     }
 
     /**
@@ -120,16 +249,19 @@ public class MineSweeper {
     }
 
     /**
-     * Little more sophisticated approach how to generate random mine index with sureness of mine amount
+     * Little more sophisticated approach how to generate random mine index with sureness of mine amount<br/>
+     * This is generator of {@link BoardIdentity#GENERATOR_VERSION} 1, any change needs new version
      *
      * @param size
      * @return
      */
     private int[] getRandomIndexesForMines(int size) {
-        int[] subData = new int[mMineField.length];
-        //gen indexes
-        for (int i = 0; i < subData.length; i++) {
-            subData[i] = i;
+        int[] subData = new int[mTopology.getActiveCount()];
+        //gen indexes, only fields which are part of board
+        for (int i = 0, pos = 0; i < mMineField.length; i++) {
+            if (mTopology.isActive(i)) {
+                subData[pos++] = i;
+            }
         }
         //random order of indexes
         for (int i = 0; i < subData.length && i < size; i++) {
@@ -144,7 +276,21 @@ public class MineSweeper {
         return result;
     }
 
+    /**
+     * Add amount of mines around to every not mine field, square boards are counted by {@link BitBoard}
+     */
     void generateAdjacents() {
+        if (mTopology.isSquare()) {
+            BitBoard.fromField(mMineField, mSize).addAdjacents(mMineField);
+        } else {
+            generateAdjacentsByNeighbours();
+        }
+    }
+
+    /**
+     * Same as {@link #generateAdjacents()}, field by field over neighbour lists of topology
+     */
+    void generateAdjacentsByNeighbours() {
         for (int i = 0; i < mMineField.length; i++) {
             if ((mMineField[i] & MASK_DATA) != DATA_MINE) {
                 mMineField[i] += getMinesAround(i);
@@ -159,21 +305,70 @@ public class MineSweeper {
      * @param column
      */
     public void onStep(int row, int column) {
+        if (hasState(row, column, STATE_CLOSED) && mTopology.isActive(getIndex(row, column))) {
+            mMoveCells.clear();
+            if (openField(getIndex(row, column))) {
+                //stepping on mine ends the game, nothing to revert
+                mHistory.push(MoveHistory.TYPE_OPEN, mMoveCells.toArray(), mMoveCells.size());
+            }
+        }
+    }
+
+    /**
+     * Open all not flagged fields around already opened number,
+     * only if there is same amount of flags around as the number says
+     *
+     * @param row
+     * @param column
+     */
+    public void onChord(int row, int column) {
         int index = getIndex(row, column);
-        if (hasState(row, column, STATE_CLOSED)) {
-            int data = mMineField[index] & MASK_DATA;
-            if (data == DATA_MINE) {
-                mDelegate.onMineStep(row, column);
-            } else {
-                mDelegate.onSaveStep(row, column, data);
-                if (data == 0) {
-                    onZeroStep(row, column);
-                }
+        int data = mMineField[index] & MASK_DATA;
+        if (!hasState(index, STATE_OPEN) || data == DATA_MINE || data == 0) {
+            return;
+        }
+        if (countAround(index, STATE_FLAG) != data) {
+            return;
+        }
+        mMoveCells.clear();
+        boolean alive = true;
+        //own buffer, flood below uses mAround
+        final int[] around = new int[Topology.MAX_NEIGHBOURS];
+        for (int i = 0, n = mTopology.getNeighbours(index, around); i < n && alive; i++) {
+            int adjIndex = around[i];
+            //previous flood could already open it
+            if (hasState(adjIndex, STATE_CLOSED)) {
+                alive = openField(adjIndex);
             }
-            mMineField[index] = data | STATE_OPEN;
+        }
+        if (alive) {
+            mHistory.push(MoveHistory.TYPE_OPEN, mMoveCells.toArray(), mMoveCells.size());
         }
     }
 
+    /**
+     * Open closed field and notify UI
+     *
+     * @param index
+     * @return false if there was a mine
+     */
+    private boolean openField(int index) {
+        int row = index / mSize;
+        int column = index % mSize;
+        mMoveCells.add(index);
+        int data = mMineField[index] & MASK_DATA;
+        if (data == DATA_MINE) {
+            mDelegate.onMineStep(row, column);
+        } else {
+            mDelegate.onSaveStep(row, column, data);
+            if (data == 0) {
+                onZeroStep(row, column);
+            }
+        }
+        setState(index, STATE_OPEN);
+        return data != DATA_MINE;
+    }
+
     /**
      * Flag field by "flag icon"
      *
@@ -183,15 +378,74 @@ public class MineSweeper {
      */
     public void onFlag(int row, int column) {
         int index = getIndex(row, column);
+        if (!mTopology.isActive(index)) {
+            return;
+        }
         if (hasState(row, column, STATE_FLAG)) {
-            mMineField[index] &= MASK_DATA;
+            setState(index, STATE_CLOSED);
             mDelegate.onReset(row, column);
+            mHistory.push(MoveHistory.TYPE_FLAG, new int[]{index}, 1);
         } else if (hasState(row, column, STATE_CLOSED)) {
-            mMineField[index] = (mMineField[index] & MASK_DATA) | STATE_FLAG;
+            setState(index, STATE_FLAG);
             mDelegate.onShowFlag(row, column);
+            mHistory.push(MoveHistory.TYPE_FLAG, new int[]{index}, 1);
         }
     }
 
+    /**
+     * Revert last move, UI is notified by one {@link MineSweeperDelegate#onBatchUpdate(CellBatch)}
+     *
+     * @return true if there was anything to revert
+     */
+    public boolean undo() {
+        MoveHistory.Move move = mHistory.undo();
+        if (move == null) {
+            return false;
+        }
+        applyMove(move, true);
+        return true;
+    }
+
+    /**
+     * Apply again last reverted move
+     *
+     * @return true if there was anything to apply
+     */
+    public boolean redo() {
+        MoveHistory.Move move = mHistory.redo();
+        if (move == null) {
+            return false;
+        }
+        applyMove(move, false);
+        return true;
+    }
+
+    public boolean canUndo() {
+        return mHistory.canUndo();
+    }
+
+    public boolean canRedo() {
+        return mHistory.canRedo();
+    }
+
+    private void applyMove(MoveHistory.Move move, boolean revert) {
+        int[] indexes = move.indexes();
+        int[] values = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            int state;
+            if (move.type == MoveHistory.TYPE_OPEN) {
+                state = revert ? STATE_CLOSED : STATE_OPEN;
+            } else {
+                //flag is just toggle
+                state = hasState(index, STATE_FLAG) ? STATE_CLOSED : STATE_FLAG;
+            }
+            setState(index, state);
+            values[i] = mMineField[index];
+        }
+        mDelegate.onBatchUpdate(new CellBatch(indexes, values));
+    }
+
     boolean hasState(int rowIndex, int columnIndex, int flag) {
         return (mMineField[getIndex(rowIndex, columnIndex)] & MASK_STATE) == flag;
     }
@@ -200,6 +454,229 @@ public class MineSweeper {
         return (mMineField[index] & MASK_STATE) == flag;
     }
 
+    /**
+     * @param index
+     * @return current STATE_ of field
+     */
+    int getFieldState(int index) {
+        return mMineField[index] & MASK_STATE;
+    }
+
+    /**
+     * Change state of field and keep all indexes up to date
+     *
+     * @param index
+     * @param state
+     */
+    private void setState(int index, int state) {
+        int oldState = mMineField[index] & MASK_STATE;
+        mMineField[index] = (mMineField[index] & MASK_DATA) | state;
+        if (mFrontier != null) {
+            mFrontier.onStateChanged(index, oldState, state);
+        }
+        updateClosed(index);
+    }
+
+    /**
+     * Recalculate all indexes from scratch, call after bulk change of {@link #mMineField}
+     */
+    private void rebuildIndexes() {
+        if (mFrontier != null) {
+            mFrontier.rebuild();
+        }
+        if (mClosed != null) {
+            mClosed.clear();
+            for (int i = 0; i < mMineField.length; i++) {
+                updateClosed(i);
+            }
+        }
+    }
+
+    private void updateClosed(int index) {
+        if (mClosed == null) {
+            return;
+        }
+        if ((mMineField[index] & MASK_STATE) == STATE_CLOSED && mTopology.isActive(index)) {
+            if (!mClosed.contains(index)) {
+                mClosed.add(index, (mMineField[index] & MASK_DATA) != DATA_MINE);
+            }
+        } else {
+            mClosed.remove(index);
+        }
+    }
+
+    /**
+     * @return index of closed fields, built on first use, games without random queries don't pay its memory
+     */
+    private SplitIntSet getClosed() {
+        if (mClosed == null) {
+            mClosed = new SplitIntSet(mMineField.length);
+            for (int i = 0; i < mMineField.length; i++) {
+                updateClosed(i);
+            }
+        }
+        return mClosed;
+    }
+
+    /**
+     * @param value raw field value
+     * @return {@link #DATA_MINE} or amount of adjacent mines
+     */
+    public static int getData(int value) {
+        return value & MASK_DATA;
+    }
+
+    /**
+     * @param value raw field value
+     * @return one of STATE_ constants
+     */
+    public static int getState(int value) {
+        return value & MASK_STATE;
+    }
+
+    /**
+     * @return sqrt of fields in game
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    public Topology getTopology() {
+        return mTopology;
+    }
+
+    /**
+     * @return number of mines in game
+     */
+    public int getMines() {
+        return mMines;
+    }
+
+    //region frontier
+
+    /**
+     * @return frontier index, built on first use, games without frontier queries don't pay its memory
+     */
+    private FrontierIndex getFrontier() {
+        if (mFrontier == null) {
+            mFrontier = new FrontierIndex(this, mTopology);
+            mFrontier.rebuild();
+        }
+        return mFrontier;
+    }
+
+    /**
+     * @param index
+     * @param state one of STATE_ constants
+     * @return amount of neighbours in state, from index if it's built, otherwise counted now
+     */
+    private int countAround(int index, int state) {
+        if (mFrontier != null) {
+            return state == STATE_OPEN ? mFrontier.getOpenAround(index)
+                    : (state == STATE_FLAG ? mFrontier.getFlagsAround(index) : mFrontier.getClosedAround(index));
+        }
+        int result = 0;
+        final int[] around = new int[Topology.MAX_NEIGHBOURS];
+        for (int i = 0, n = mTopology.getNeighbours(index, around); i < n; i++) {
+            if ((mMineField[around[i]] & MASK_STATE) == state) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * First call builds frontier index in O(fields), then it's updated with every move
+     *
+     * @return amount of not opened fields next to any opened field
+     */
+    public int getFrontierSize() {
+        return getFrontier().size();
+    }
+
+    /**
+     * Iterate frontier by position, order is not stable between moves
+     *
+     * @param i position in range [0, {@link #getFrontierSize()})
+     * @return index of field, row = index / size, column = index % size
+     */
+    public int getFrontierField(int i) {
+        return getFrontier().get(i);
+    }
+
+    /**
+     * @param row
+     * @param column
+     * @return true if field is not opened and has opened neighbour
+     */
+    public boolean isFrontier(int row, int column) {
+        return getFrontier().contains(getIndex(row, column));
+    }
+
+    /**
+     * @param row
+     * @param column
+     * @return amount of closed not flagged neighbours
+     */
+    public int getUnresolvedAround(int row, int column) {
+        return countAround(getIndex(row, column), STATE_CLOSED);
+    }
+
+    /**
+     * @param row
+     * @param column
+     * @return amount of flagged neighbours
+     */
+    public int getFlagsAround(int row, int column) {
+        return countAround(getIndex(row, column), STATE_FLAG);
+    }
+
+    /**
+     * @param row
+     * @param column
+     * @return amount of opened neighbours
+     */
+    public int getOpenAround(int row, int column) {
+        return countAround(getIndex(row, column), STATE_OPEN);
+    }
+    //endregion frontier
+
+    //region closed fields
+
+    /*
+     * Index is built by first query in O(fields), then it's updated with every move
+     */
+
+    /**
+     * @return amount of closed not flagged fields, O(1)
+     */
+    public int closedCount() {
+        return getClosed().size();
+    }
+
+    /**
+     * Random closed not flagged field without mine, e.g. for hint, O(1) without allocation
+     *
+     * @return index of field, row = index / size, column = index % size, -1 if there is no such field
+     */
+    public int randomSafeClosedCell() {
+        SplitIntSet closed = getClosed();
+        int n = closed.firstSize();
+        return n == 0 ? -1 : closed.get(mRandom.nextInt(n));
+    }
+
+    /**
+     * Random closed not flagged field, mine or not, e.g. for bots, O(1) without allocation
+     *
+     * @return index of field, row = index / size, column = index % size, -1 if there is no such field
+     */
+    public int randomClosedCell() {
+        SplitIntSet closed = getClosed();
+        int n = closed.size();
+        return n == 0 ? -1 : closed.get(mRandom.nextInt(n));
+    }
+    //endregion closed fields
+
     /**
      * Call this to inform UI what we need to show as mines
      *
@@ -209,6 +686,9 @@ public class MineSweeper {
         for (int i = 0, n = mMineField.length; i < n; i++) {
             int row = i / mSize;
             int column = i % mSize;
+            if (!mTopology.isActive(i)) {
+                continue;
+            }
             if (hasState(i, STATE_CLOSED)) {
                 if (cheating) {
                     mDelegate.onShowHelp(row, column, mMineField[i] & MASK_DATA);
@@ -244,11 +724,9 @@ public class MineSweeper {
      */
     int getMinesAround(int index) {
         int result = 0;
-        for (int i = 0, n = WAYS.length; i < n; i++) {
-            int indexToCheck = getIndex(index, WAYS[i]);
-            if (indexToCheck != -1) {
-                result += ((mMineField[indexToCheck] & MASK_DATA) == DATA_MINE) ? 1 : 0;
-            }
+        final int[] around = mAround;
+        for (int i = 0, n = mTopology.getNeighbours(index, around); i < n; i++) {
+            result += ((mMineField[around[i]] & MASK_DATA) == DATA_MINE) ? 1 : 0;
         }
         return result;
     }
@@ -263,72 +741,18 @@ public class MineSweeper {
         for (int i = 0, n = mMineField.length; i < n; i++) {
             int row = i / mSize;
             int column = i % mSize;
-            if (!hasState(i, STATE_OPEN)) {
+            if (!hasState(i, STATE_OPEN) && mTopology.isActive(i)) {
                 int data = mMineField[i] & MASK_DATA;
                 mDelegate.onShowHelp(row, column, data);
                 notOpened++;
                 mMineField[i] = data | STATE_OPEN;
             }
         }
+        mHistory.clear();
+        rebuildIndexes();
         return notOpened == mMines;
     }
 
-    private static final Way[] WAYS = Way.values();
-
-    /* help enum for navigation */
-    enum Way {
-        NW, N, NE, W, E, SW, S, SE
-    }
-
-    /**
-     * Get index of adjacent field<br/>
-     * <p/>
-     * -1 is returned in case when you are asking for not existing place
-     * I.g. TopLeft field doesn't have West or North fields around
-     *
-     * @param center
-     * @param way
-     * @return index of field or -1 if it's not valid
-     */
-    int getIndex(int center, Way way) {
-        final int div = (center / mSize);
-        final int mod = (center % mSize);
-
-        boolean isLeftEdge = mod == 0;
-        boolean isTopEdge = div == 0;
-        boolean isRightEdge = mod == (mSize - 1);
-        boolean isBottomEdge = div == (mSize - 1);
-
-        int value = -1;
-        switch (way) {
-            case NW:
-                value = (isTopEdge || isLeftEdge) ? -1 : center - mSize - 1;
-                break;
-            case N:
-                value = (isTopEdge) ? -1 : center - mSize;
-                break;
-            case NE:
-                value = (isTopEdge || isRightEdge) ? -1 : center - mSize + 1;
-                break;
-            case W:
-                value = (isLeftEdge) ? -1 : center + -1;
-                break;
-            case E:
-                value = (isRightEdge) ? -1 : center + 1;
-                break;
-            case SW:
-                value = (isLeftEdge || isBottomEdge) ? -1 : center + mSize - 1;
-                break;
-            case S:
-                value = (isBottomEdge) ? -1 : center + mSize;
-                break;
-            case SE:
-                value = (isBottomEdge || isRightEdge) ? -1 : center + mSize + 1;
-        }
-        return value == mMineField.length ? -1 : value;
-    }
-
-
     /**
      * Go through adjacent fields with 0 and notify UI
      *
@@ -336,32 +760,29 @@ public class MineSweeper {
      * @param column
      */
     void onZeroStep(int row, int column) {
-        List<Integer> bfs = new ArrayList<Integer>();
+        final int[] around = mAround;
+        IntList bfs = new IntList();
         bfs.add(getIndex(row, column));
 
         while (bfs.size() > 0) {
+            IntList wave = new IntList();
 
-            Iterator<Integer> iter = bfs.iterator();
-            List<Integer> wave = new ArrayList<Integer>();
-
-            while (iter.hasNext()) {
-                int index = iter.next();
+            for (int b = 0, bn = bfs.size(); b < bn; b++) {
+                int index = bfs.get(b);
 
                 //look around for zeros
-                for (int i = 0, n = WAYS.length; i < n; i++) {
-                    Way w = WAYS[i];
-                    int adjIndex = getIndex(index, w);
-                    if (adjIndex != -1  //is valid index
-                            && hasState(adjIndex, STATE_CLOSED) //not opened yet
+                for (int i = 0, n = mTopology.getNeighbours(index, around); i < n; i++) {
+                    int adjIndex = around[i];
+                    if (hasState(adjIndex, STATE_CLOSED) //not opened yet
                             && ((mMineField[adjIndex] & MASK_DATA) == 0)) { //has 0 adjacents
 
                         wave.add(adjIndex);
-                        mMineField[adjIndex] = STATE_OPEN;
+                        setState(adjIndex, STATE_OPEN);
+                        mMoveCells.add(adjIndex);
                         //notify UI
                         mDelegate.onSaveStep(adjIndex / mSize, adjIndex % mSize, 0);
                     }
                 }
-                iter.remove();
             }
             bfs = wave;
         }
@@ -378,6 +799,68 @@ public class MineSweeper {
         return data;
     }
 
+    /**
+     * @return identity to generate this board again, null if game was loaded from data or isn't square board
+     */
+    public BoardIdentity getIdentity() {
+        return mIdentity;
+    }
+
+    /**
+     * Save only states of fields, mines are given by {@link #getIdentity()}<br/>
+     * 2 bits per field (closed, opened, flagged), 16 fields per int
+     *
+     * @return packed states
+     */
+    int[] saveStates() {
+        return saveStates(mMineField);
+    }
+
+    /**
+     * @param data raw data, see {@link #saveInstance()}
+     * @return packed states, see {@link #saveStates()}
+     */
+    static int[] saveStates(int[] data) {
+        int[] result = new int[(data.length + 15) >>> 4];
+        for (int i = 0; i < data.length; i++) {
+            int state = data[i] & MASK_STATE;
+            int bits = state == STATE_OPEN ? 1 : (state == STATE_FLAG ? 2 : 0);
+            result[i >>> 4] |= bits << ((i & 15) << 1);
+        }
+        return result;
+    }
+
+    /**
+     * Apply states saved by {@link #saveStates()} on this board, undo history is dropped, no UI notification
+     *
+     * @param states
+     */
+    void restoreStates(int[] states) {
+        if (states.length != (mMineField.length + 15) >>> 4) {
+            throw new IllegalArgumentException("States size is different than current game!");
+        }
+        for (int i = 0; i < mMineField.length; i++) {
+            int bits = (states[i >>> 4] >>> ((i & 15) << 1)) & 3;
+            int state = bits == 1 ? STATE_OPEN : (bits == 2 ? STATE_FLAG : STATE_CLOSED);
+            mMineField[i] = (mMineField[i] & MASK_DATA) | state;
+        }
+        mHistory.clear();
+        rebuildIndexes();
+    }
+
+    /**
+     * Rebuild whole saved game from share code and states
+     *
+     * @param identity
+     * @param states   see {@link #saveStates()}
+     * @return raw data, see {@link #saveInstance()}
+     */
+    static int[] createInstance(BoardIdentity identity, int[] states) {
+        MineSweeper game = new MineSweeper(identity, new SilentDelegate());
+        game.restoreStates(states);
+        return game.mMineField;
+    }
+
     /**
      * Restore game, data must be valid otherwise you can put game into dangerous state!
      *
@@ -388,10 +871,17 @@ public class MineSweeper {
             throw new IllegalArgumentException("Data size is different than current game!");
         }
         System.arraycopy(data, 0, mMineField, 0, data.length);
+        //data doesn't have to come from this board
+        countMines();
+        mHistory.clear();
+        rebuildIndexes();
         onRestoreUI();
     }
 
-    private void onRestoreUI() {
+    /**
+     * Notify UI about all opened and flagged fields, e.g. after {@link #restoreStates(int[])}, closed fields are not notified
+     */
+    void onRestoreUI() {
         for (int i = 0, n = mMineField.length; i < n; i++) {
             int row = i / mSize;
             int column = i % mSize;
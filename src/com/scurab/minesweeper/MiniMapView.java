@@ -0,0 +1,132 @@
+package com.scurab.minesweeper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Downsampled overview of whole board drawn from {@link BoardTileCache}<br/>
+ * Touching the map reports position for navigation.
+ * Useful only for boards of at least {@link #MIN_BOARD_SIZE}, smaller boards fit on screen.
+ */
+public class MiniMapView extends View {
+
+    public interface OnNavigateListener {
+        /**
+         * @param row    touched row of board
+         * @param column touched column of board
+         */
+        void onNavigate(int row, int column);
+    }
+
+    /* smallest board where minimap makes sense */
+    public static final int MIN_BOARD_SIZE = 2 * BoardTileCache.TILE_CELLS;
+
+    private BoardTileCache mTileCache;
+
+    private int mBoardSize;
+
+    private OnNavigateListener mOnNavigateListener;
+
+    /* visible part of board, rows and columns */
+    private final Rect mViewport = new Rect();
+
+    /* fields are scaled up without filtering, sharp edges are better than blur */
+    private final Paint mBitmapPaint = new Paint();
+    private final Paint mViewportPaint = new Paint();
+    private final Rect mSrc = new Rect();
+    private final Rect mDst = new Rect();
+
+    public MiniMapView(Context context) {
+        super(context);
+        init();
+    }
+
+    public MiniMapView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    private void init() {
+        mViewportPaint.setStyle(Paint.Style.STROKE);
+        mViewportPaint.setStrokeWidth(2);
+        mViewportPaint.setColor(0xFF0000FF);
+    }
+
+    /**
+     * @param tileCache
+     * @param boardSize size of board
+     */
+    public void setTileCache(BoardTileCache tileCache, int boardSize) {
+        mTileCache = tileCache;
+        mBoardSize = boardSize;
+        invalidate();
+    }
+
+    /**
+     * Highlight visible part of board
+     *
+     * @param firstRow
+     * @param firstColumn
+     * @param rows
+     * @param columns
+     */
+    public void setViewport(int firstRow, int firstColumn, int rows, int columns) {
+        mViewport.set(firstColumn, firstRow, firstColumn + columns, firstRow + rows);
+        invalidate();
+    }
+
+    public void setOnNavigateListener(OnNavigateListener onNavigateListener) {
+        mOnNavigateListener = onNavigateListener;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mTileCache == null) {
+            return;
+        }
+        int side = Math.min(getWidth(), getHeight());
+        if (side == 0) {
+            return;
+        }
+        //bitmap close to size of view, at most pixel per field
+        int tilePixels = Math.max(1, Math.min(BoardTileCache.TILE_CELLS,
+                (side * BoardTileCache.TILE_CELLS + mBoardSize - 1) / mBoardSize));
+        Bitmap map = mTileCache.getMiniMap(tilePixels);
+        //map contains whole tiles, cut just the board
+        float boardPixels = mBoardSize * tilePixels / (float) BoardTileCache.TILE_CELLS;
+        mSrc.set(0, 0, Math.round(boardPixels), Math.round(boardPixels));
+        mDst.set(0, 0, side, side);
+        canvas.drawBitmap(map, mSrc, mDst, mBitmapPaint);
+
+        if (mViewport.right > mViewport.left) {
+            float scale = side / (float) mBoardSize;
+            canvas.drawRect(mViewport.left * scale, mViewport.top * scale,
+                    mViewport.right * scale, mViewport.bottom * scale, mViewportPaint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mOnNavigateListener == null || mBoardSize == 0) {
+            return super.onTouchEvent(event);
+        }
+        int action = event.getAction();
+        if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_MOVE) {
+            int side = Math.min(getWidth(), getHeight());
+            if (side > 0) {
+                int row = (int) (event.getY() * mBoardSize / side);
+                int column = (int) (event.getX() * mBoardSize / side);
+                mOnNavigateListener.onNavigate(Math.max(0, Math.min(mBoardSize - 1, row)),
+                        Math.max(0, Math.min(mBoardSize - 1, column)));
+            }
+        }
+        return true;
+    }
+}
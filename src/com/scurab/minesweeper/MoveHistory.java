@@ -0,0 +1,163 @@
+package com.scurab.minesweeper;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+/**
+ * Undo/redo history of moves<br/>
+ * Every move keeps only indexes of changed fields, encoded as sorted runs (start, length),
+ * so flood in one area of board costs just few ints.
+ * Previous values don't have to be stored, open move is always CLOSED -> OPEN and flag move is just toggle.
+ */
+class MoveHistory {
+
+    static final int TYPE_OPEN = 1;
+    static final int TYPE_FLAG = 2;
+
+    /* Default memory limit in ints for all stored moves */
+    static final int DEFAULT_MAX_MEMORY = 1 << 20;
+
+    static class Move {
+        final int type;
+        /* pairs of (start, length) */
+        final int[] runs;
+        /* amount of fields in move */
+        final int cells;
+
+        Move(int type, int[] runs, int cells) {
+            this.type = type;
+            this.runs = runs;
+            this.cells = cells;
+        }
+
+        /**
+         * @return all indexes of move in ascending order
+         */
+        int[] indexes() {
+            int[] result = new int[cells];
+            int pos = 0;
+            for (int i = 0; i < runs.length; i += 2) {
+                for (int j = 0, start = runs[i], n = runs[i + 1]; j < n; j++) {
+                    result[pos++] = start + j;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return approximate memory usage in ints
+         */
+        int memory() {
+            return runs.length + 4;
+        }
+    }
+
+    private final LinkedList<Move> mUndo = new LinkedList<Move>();
+    private final LinkedList<Move> mRedo = new LinkedList<Move>();
+
+    private final int mMaxMemory;
+
+    private int mMemory;
+
+    MoveHistory(int maxMemory) {
+        if (maxMemory <= 0) {
+            throw new IllegalArgumentException("Memory limit must be positive!");
+        }
+        mMaxMemory = maxMemory;
+    }
+
+    /**
+     * Store new move, redo history is dropped and oldest moves are evicted if over memory limit
+     *
+     * @param type
+     * @param indexes changed fields, can be unsorted and with duplicates
+     * @param count   valid items in indexes
+     */
+    void push(int type, int[] indexes, int count) {
+        if (count == 0) {
+            return;
+        }
+        for (Move m : mRedo) {
+            mMemory -= m.memory();
+        }
+        mRedo.clear();
+
+        Move move = encode(type, indexes, count);
+        mUndo.addLast(move);
+        mMemory += move.memory();
+        //keep at least last move even if it's too big
+        while (mMemory > mMaxMemory && mUndo.size() > 1) {
+            mMemory -= mUndo.removeFirst().memory();
+        }
+    }
+
+    /**
+     * @return move to undo or null, move is passed into redo stack
+     */
+    Move undo() {
+        if (mUndo.isEmpty()) {
+            return null;
+        }
+        Move m = mUndo.removeLast();
+        mRedo.addLast(m);
+        return m;
+    }
+
+    /**
+     * @return move to redo or null, move is passed into undo stack
+     */
+    Move redo() {
+        if (mRedo.isEmpty()) {
+            return null;
+        }
+        Move m = mRedo.removeLast();
+        mUndo.addLast(m);
+        return m;
+    }
+
+    boolean canUndo() {
+        return !mUndo.isEmpty();
+    }
+
+    boolean canRedo() {
+        return !mRedo.isEmpty();
+    }
+
+    void clear() {
+        mUndo.clear();
+        mRedo.clear();
+        mMemory = 0;
+    }
+
+    int getMemory() {
+        return mMemory;
+    }
+
+    static Move encode(int type, int[] indexes, int count) {
+        int[] sorted = new int[count];
+        System.arraycopy(indexes, 0, sorted, 0, count);
+        Arrays.sort(sorted);
+
+        IntList runs = new IntList();
+        int cells = 0;
+        int start = sorted[0];
+        int last = start;
+        for (int i = 1; i < count; i++) {
+            int v = sorted[i];
+            if (v == last) {
+                continue;//duplicate
+            }
+            if (v != last + 1) {
+                runs.add(start);
+                runs.add(last - start + 1);
+                cells += last - start + 1;
+                start = v;
+            }
+            last = v;
+        }
+        runs.add(start);
+        runs.add(last - start + 1);
+        cells += last - start + 1;
+        return new Move(type, runs.toArray(), cells);
+    }
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.content.res.TypedArray;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.os.Vibrator;
 import android.util.AttributeSet;
 import android.view.View;
@@ -26,10 +27,50 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
 
     private int mMines;
 
+    /* Game used directly on UI thread, null in executor mode */
     private MineSweeper mMineSweeper;
 
+    /* Game running on background thread, null in direct mode */
+    private GameExecutor mExecutor;
+
+    /* Requested mode, executor is stopped while view is detached */
+    private boolean mUseGameExecutor;
+
+    /* Identity of current board, saved instead of whole board */
+    private BoardIdentity mIdentity;
+
     private OnFinishGameListener mOnFinishGameListener;
 
+    /* Time budget for revealing fields in one frame */
+    private static final long REVEAL_FRAME_BUDGET_MS = 8;
+
+    /* Delay between reveal frames */
+    private static final long REVEAL_FRAME_DELAY_MS = 16;
+
+    /* How many fields are revealed between time checks */
+    private static final int REVEAL_CHECK_STEP = 16;
+
+    /* Reveal big floods progressively in more frames */
+    private boolean mProgressiveReveal;
+
+    /* Pending fields to reveal, pairs of (index, adjacents) in BFS order */
+    private final IntList mPendingReveal = new IntList();
+
+    /* Position of next pending field in mPendingReveal */
+    private int mPendingRevealPosition;
+
+    private final Runnable mRevealFrame = new Runnable() {
+        @Override
+        public void run() {
+            revealFrame();
+        }
+    };
+
+    /* Rendered board for minimap, null if there is no minimap */
+    private BoardTileCache mTileCache;
+
+    private MiniMapView mMiniMap;
+
     public PlayArea(Context context) {
         super(context);
         init(null);
@@ -46,8 +87,12 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
             TypedArray array = getContext().obtainStyledAttributes(attrs, R.styleable.PlayArea);
             mAreaSize = array.getInt(R.styleable.PlayArea_areaSize, 8);
             mMines = array.getInt(R.styleable.PlayArea_mines, 10);
+            mProgressiveReveal = array.getBoolean(R.styleable.PlayArea_progressiveReveal, false);
+            //executor is started when view is attached
+            mUseGameExecutor = array.getBoolean(R.styleable.PlayArea_useGameExecutor, false);
         }
-        mMineSweeper = new MineSweeper(mAreaSize, mMines, this);
+        mIdentity = BoardIdentity.random(mAreaSize, mMines);
+        mMineSweeper = new MineSweeper(mIdentity, this);
         buildPlayArea(mAreaSize);
     }
 
@@ -113,13 +158,226 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
     }
 
     public void onLongButtonClick(PlayButton source, int rowIndex, int columnIndex) {
-        mMineSweeper.onFlag(rowIndex, columnIndex);
+        completePendingReveal();
+        if (mExecutor != null) {
+            mExecutor.onFlag(rowIndex, columnIndex);
+        } else {
+            mMineSweeper.onFlag(rowIndex, columnIndex);
+        }
     }
 
     public void onButtonClick(PlayButton button, int rowIndex, int columnIndex) {
-        mMineSweeper.onStep(rowIndex, columnIndex);
+        completePendingReveal();
+        if (mExecutor != null) {
+            mExecutor.onStep(rowIndex, columnIndex);
+        } else {
+            mMineSweeper.onStep(rowIndex, columnIndex);
+            revealFrame();
+        }
+    }
+
+    //region executor
+
+    /**
+     * Move game off UI thread<br/>
+     * In executor mode game lives on background thread, input is queued there
+     * and UI is updated by batched diffs. Undo history doesn't survive switching of mode.
+     *
+     * @param useExecutor
+     */
+    public void setUseGameExecutor(boolean useExecutor) {
+        mUseGameExecutor = useExecutor;
+        applyGameExecutor(useExecutor);
+    }
+
+    private void applyGameExecutor(boolean useExecutor) {
+        if (useExecutor == (mExecutor != null)) {
+            return;
+        }
+        completePendingReveal();
+        if (useExecutor) {
+            mExecutor = new GameExecutor(this);
+            mExecutor.loadGame(mAreaSize, mMineSweeper.saveInstance());
+            mMineSweeper = null;
+        } else {
+            //not applied commands are dropped, game is rebuilt from states shown on UI
+            int[] data = MineSweeper.createInstance(mIdentity, mExecutor.saveStates());
+            mExecutor.quit();
+            mExecutor = null;
+            mMineSweeper = new MineSweeper(mAreaSize, data, this);
+            resetButtons();
+            mMineSweeper.restoreInstance(data);
+        }
+    }
+
+    public boolean isUsingGameExecutor() {
+        return mUseGameExecutor;
+    }
+
+    /**
+     * @return latency from input to applied UI diff, null if executor is not used
+     */
+    public LatencyStats getInputLatencyStats() {
+        return mExecutor != null ? mExecutor.getLatencyStats() : null;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        applyGameExecutor(mUseGameExecutor);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(mRevealFrame);
+        //keep game in direct mode while detached, executor thread would leak otherwise
+        applyGameExecutor(false);
+    }
+    //endregion executor
+
+    //region progressive reveal
+
+    /**
+     * Reveal big floods in more frames to keep UI responsive<br/>
+     * Game state is updated at once, just UI is updated in BFS order within frame time budget
+     *
+     * @param progressiveReveal
+     */
+    public void setProgressiveReveal(boolean progressiveReveal) {
+        mProgressiveReveal = progressiveReveal;
+        if (!progressiveReveal) {
+            completePendingReveal();
+        }
+    }
+
+    public boolean isProgressiveReveal() {
+        return mProgressiveReveal;
+    }
+
+    /**
+     * Show all fields waiting for reveal immediately
+     */
+    public void completePendingReveal() {
+        removeCallbacks(mRevealFrame);
+        revealPending(Long.MAX_VALUE);
+    }
+
+    /**
+     * Reveal as many pending fields as fits into frame budget and schedule next frame if necessary
+     */
+    private void revealFrame() {
+        removeCallbacks(mRevealFrame);
+        if (!revealPending(SystemClock.uptimeMillis() + REVEAL_FRAME_BUDGET_MS)) {
+            postDelayed(mRevealFrame, REVEAL_FRAME_DELAY_MS);
+        }
+    }
+
+    /**
+     * @param deadline uptime when to stop
+     * @return true if everything has been revealed
+     */
+    private boolean revealPending(long deadline) {
+        final IntList pending = mPendingReveal;
+        int pos = mPendingRevealPosition;
+        final int n = pending.size();
+        while (pos < n) {
+            int index = pending.get(pos);
+            getPlayButton(index / mAreaSize, index % mAreaSize).setAdjacents(pending.get(pos + 1));
+            pos += 2;
+            if (((pos >> 1) % REVEAL_CHECK_STEP) == 0 && SystemClock.uptimeMillis() >= deadline) {
+                break;
+            }
+        }
+        mPendingRevealPosition = pos;
+        if (pos >= n) {
+            pending.clear();
+            mPendingRevealPosition = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Show pending fields before any other change of UI, later frame would overwrite it otherwise
+     */
+    private void flushPendingReveal() {
+        if (mPendingReveal.size() > 0) {
+            completePendingReveal();
+        }
     }
 
+    private void dropPendingReveal() {
+        removeCallbacks(mRevealFrame);
+        mPendingReveal.clear();
+        mPendingRevealPosition = 0;
+    }
+    //endregion progressive reveal
+
+    //region minimap
+
+    /**
+     * Attach minimap showing whole board, pass null to detach it<br/>
+     * Minimap is fed by same notifications as buttons, so only changed tiles are rendered again.
+     *
+     * @param miniMap
+     */
+    public void setMiniMap(MiniMapView miniMap) {
+        if (mMiniMap != null) {
+            mMiniMap.setTileCache(null, 0);
+        }
+        mMiniMap = miniMap;
+        if (miniMap == null) {
+            if (mTileCache != null) {
+                mTileCache.release();
+                mTileCache = null;
+            }
+            return;
+        }
+        if (mTileCache == null) {
+            mTileCache = new BoardTileCache(mAreaSize);
+            mTileCache.setCells(mExecutor != null
+                    ? MineSweeper.createInstance(mIdentity, mExecutor.saveStates())
+                    : mMineSweeper.saveInstance());
+        }
+        miniMap.setTileCache(mTileCache, mAreaSize);
+    }
+
+    /**
+     * Highlight visible rows in minimap
+     *
+     * @param top    first visible pixel of this view, can be negative
+     * @param height visible height
+     */
+    public void setVisibleArea(int top, int height) {
+        if (mMiniMap == null || getHeight() == 0) {
+            return;
+        }
+        float rowHeight = getHeight() / (float) mAreaSize;
+        int firstRow = Math.max(0, Math.min(mAreaSize - 1, (int) (top / rowHeight)));
+        int lastRow = Math.max(firstRow, Math.min(mAreaSize - 1, (int) ((top + height) / rowHeight)));
+        mMiniMap.setViewport(firstRow, 0, lastRow - firstRow + 1, mAreaSize);
+    }
+
+    public int getAreaSize() {
+        return mAreaSize;
+    }
+
+    /**
+     * Update minimap for changed field
+     *
+     * @param row
+     * @param column
+     * @param value raw value of field
+     */
+    private void onCellChanged(int row, int column, int value) {
+        if (mTileCache != null) {
+            mTileCache.onCellChanged(row, column, value);
+            mMiniMap.invalidate();
+        }
+    }
+    //endregion minimap
+
     void vibrate() {
         Vibrator v = (Vibrator) getContext().getSystemService(Context.VIBRATOR_SERVICE);
         v.vibrate(200);
@@ -127,11 +385,22 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
 
     @Override
     public void onSaveStep(int row, int column, int adjacents) {
-        getPlayButton(row, column).setAdjacents(adjacents);
+        onCellChanged(row, column, adjacents | MineSweeper.STATE_OPEN);
+        if (mProgressiveReveal) {
+            if (mPendingReveal.size() == 0) {
+                post(mRevealFrame);
+            }
+            mPendingReveal.add(row * mAreaSize + column);
+            mPendingReveal.add(adjacents);
+        } else {
+            getPlayButton(row, column).setAdjacents(adjacents);
+        }
     }
 
     @Override
     public void onMineStep(int row, int column) {
+        completePendingReveal();
+        onCellChanged(row, column, MineSweeper.DATA_MINE | MineSweeper.STATE_OPEN);
         getPlayButton(row, column).setImageResource(R.drawable.mine);
         setEnabled(false);
         vibrate();
@@ -141,6 +410,8 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
 
     @Override
     public void onShowFlag(int row, int column) {
+        flushPendingReveal();
+        onCellChanged(row, column, MineSweeper.STATE_FLAG);
         PlayButton pb = getPlayButton(row, column);
         pb.setText("");
         pb.setEnabled(true);
@@ -150,6 +421,8 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
 
     @Override
     public void onShowHelp(int row, int column, int data) {
+        flushPendingReveal();
+        onCellChanged(row, column, data | MineSweeper.STATE_OPEN);
         PlayButton pb = getPlayButton(row, column);
         pb.setEnabled(false);
         if (MineSweeper.DATA_MINE == data) {
@@ -163,14 +436,92 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
 
     @Override
     public void onReset(int row, int column) {
+        flushPendingReveal();
+        onCellChanged(row, column, MineSweeper.STATE_CLOSED);
         getPlayButton(row, column).reset();
     }
 
+    @Override
+    public void onBatchUpdate(CellBatch batch) {
+        flushPendingReveal();
+        for (int i = 0, n = batch.size(); i < n; i++) {
+            int index = batch.getIndex(i);
+            int value = batch.getValue(i);
+            int row = index / mAreaSize;
+            int column = index % mAreaSize;
+            int state = MineSweeper.getState(value);
+            if (state == MineSweeper.STATE_OPEN) {
+                onShowHelp(row, column, MineSweeper.getData(value));
+            } else if (state == MineSweeper.STATE_FLAG) {
+                onShowFlag(row, column);
+            } else {
+                onReset(row, column);
+            }
+        }
+    }
+
+    /**
+     * Revert last move
+     *
+     * @return true if anything has been reverted, always true in executor mode
+     */
+    public boolean undo() {
+        completePendingReveal();
+        if (mExecutor != null) {
+            mExecutor.undo();
+            return true;
+        }
+        return mMineSweeper.undo();
+    }
+
+    /**
+     * Apply again last reverted move
+     *
+     * @return true if anything has been applied, always true in executor mode
+     */
+    public boolean redo() {
+        completePendingReveal();
+        if (mExecutor != null) {
+            mExecutor.redo();
+            return true;
+        }
+        return mMineSweeper.redo();
+    }
+
     /**
      * Start new game
      */
     public void startNewGame() {
-        mMineSweeper = new MineSweeper(mAreaSize, mMines, this);
+        startNewGame(BoardIdentity.random(mAreaSize, mMines));
+    }
+
+    /**
+     * Start game given by identity, e.g. shared challenge
+     *
+     * @param identity size must be same as size of play area
+     */
+    public void startNewGame(BoardIdentity identity) {
+        if (identity.size != mAreaSize) {
+            throw new IllegalArgumentException("Size of board doesn't match play area!");
+        }
+        dropPendingReveal();
+        mIdentity = identity;
+        if (mExecutor != null) {
+            mExecutor.newGame(identity);
+        } else {
+            mMineSweeper = new MineSweeper(identity, this);
+        }
+        resetButtons();
+    }
+
+    /**
+     * @return identity of current board, see {@link BoardIdentity#toCode()} for sharing
+     */
+    public BoardIdentity getBoardIdentity() {
+        return mIdentity;
+    }
+
+    private void resetButtons() {
         for (int row = 0; row < mAreaSize; row++) {
             for (int col = 0; col < mAreaSize; col++) {
                 onReset(row, col);
@@ -184,20 +535,39 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
      * @param show
      */
     public void showCheat(boolean show) {
-        mMineSweeper.showCheat(show);
+        completePendingReveal();
+        if (mExecutor != null) {
+            mExecutor.showCheat(show);
+        } else {
+            mMineSweeper.showCheat(show);
+        }
     }
 
     /**
      * Finish and validate games
      *
-     * @return true if game is in victory state
+     * @return true if game is in victory state, always false in executor mode, result is passed only to listener
      */
     public boolean finishGame() {
+        completePendingReveal();
+        if (mExecutor != null) {
+            mExecutor.finishGame(new GameExecutor.OnResultListener() {
+                @Override
+                public void onResult(boolean result) {
+                    onFinishGame(result);
+                }
+            });
+            return false;
+        }
         boolean result = mMineSweeper.finishGame();
+        onFinishGame(result);
+        return result;
+    }
+
+    private void onFinishGame(boolean result) {
         if (mOnFinishGameListener != null) {
             mOnFinishGameListener.onFinishGame(result);
         }
-        return result;
     }
 
     public void setOnFinishGameListener(OnFinishGameListener onFinishGameListener) {
@@ -206,11 +576,13 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
 
     @Override
     protected Parcelable onSaveInstanceState() {
+        completePendingReveal();
         Parcelable superState = super.onSaveInstanceState();
         SavedState ss = new SavedState(superState);
-        int[] saved = mMineSweeper.saveInstance();
-        ss.dataSize = saved.length;
-        ss.data = saved;
+        //board is given by identity, keep just states of fields
+        ss.code = mIdentity.toCode();
+        ss.data = mExecutor != null ? mExecutor.saveStates() : mMineSweeper.saveStates();
+        ss.dataSize = ss.data.length;
         return ss;
     }
 
@@ -222,12 +594,26 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
         }
         SavedState ss = (SavedState) state;
         super.onRestoreInstanceState(ss.getSuperState());
-        mMineSweeper.restoreInstance(ss.data);
+        dropPendingReveal();
+        //saved board can differ from the one built from attributes, e.g. challenge with other amount of mines
+        mIdentity = BoardIdentity.fromCode(ss.code);
+        resetButtons();
+        if (mExecutor != null) {
+            mExecutor.newGame(mIdentity);
+            mExecutor.restoreInstance(MineSweeper.createInstance(mIdentity, ss.data));
+        } else {
+            mMineSweeper = new MineSweeper(mIdentity, this);
+            mMineSweeper.restoreStates(ss.data);
+            mMineSweeper.onRestoreUI();
+        }
     }
 
     //region state
     static class SavedState extends BaseSavedState {
+        /* share code of board, see BoardIdentity */
+        String code;
         int dataSize;
+        /* packed states of fields, see MineSweeper#saveStates() */
         int[] data;
 
         SavedState(Parcelable superState) {
@@ -236,6 +622,7 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
 
         private SavedState(Parcel in) {
             super(in);
+            code = in.readString();
             dataSize = in.readInt();
             data = new int[dataSize];
             in.readIntArray(data);
@@ -244,6 +631,7 @@ public class PlayArea extends LinearLayout implements MineSweeper.MineSweeperDel
         @Override
         public void writeToParcel(Parcel out, int flags) {
             super.writeToParcel(out, flags);
+            out.writeString(code);
             out.writeInt(dataSize);
             out.writeIntArray(data);
         }
@@ -0,0 +1,48 @@
+package com.scurab.minesweeper;
+
+/**
+ * Request for one headless game in {@link SessionServer}
+ */
+public final class SessionRequest {
+
+    public static final int TYPE_STEP = 1;
+    public static final int TYPE_FLAG = 2;
+    public static final int TYPE_CHORD = 3;
+    public static final int TYPE_STATE = 4;
+
+    final long sessionId;
+    final int type;
+    final int row;
+    final int column;
+
+    private SessionRequest(long sessionId, int type, int row, int column) {
+        this.sessionId = sessionId;
+        this.type = type;
+        this.row = row;
+        this.column = column;
+    }
+
+    public static SessionRequest step(long sessionId, int row, int column) {
+        return new SessionRequest(sessionId, TYPE_STEP, row, column);
+    }
+
+    public static SessionRequest flag(long sessionId, int row, int column) {
+        return new SessionRequest(sessionId, TYPE_FLAG, row, column);
+    }
+
+    public static SessionRequest chord(long sessionId, int row, int column) {
+        return new SessionRequest(sessionId, TYPE_CHORD, row, column);
+    }
+
+    public static SessionRequest state(long sessionId) {
+        return new SessionRequest(sessionId, TYPE_STATE, 0, 0);
+    }
+
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    public int getType() {
+        return type;
+    }
+}
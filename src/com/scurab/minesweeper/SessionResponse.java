@@ -0,0 +1,65 @@
+package com.scurab.minesweeper;
+
+/**
+ * Result of {@link SessionRequest}
+ */
+public final class SessionResponse {
+
+    public static final int EVENT_SAVE_STEP = 1;
+    public static final int EVENT_MINE_STEP = 2;
+    public static final int EVENT_FLAG = 3;
+    public static final int EVENT_RESET = 4;
+
+    /* triples of (event, index, data) */
+    private final int[] mEvents;
+
+    /* visible board for state request, null otherwise */
+    private final byte[] mBoard;
+
+    private final boolean mAlive;
+
+    SessionResponse(int[] events, byte[] board, boolean alive) {
+        mEvents = events;
+        mBoard = board;
+        mAlive = alive;
+    }
+
+    /**
+     * @return amount of events caused by request
+     */
+    public int getEventCount() {
+        return mEvents.length / 3;
+    }
+
+    /**
+     * @param i
+     * @return one of EVENT_ constants
+     */
+    public int getEvent(int i) {
+        return mEvents[i * 3];
+    }
+
+    public int getEventIndex(int i) {
+        return mEvents[i * 3 + 1];
+    }
+
+    public int getEventData(int i) {
+        return mEvents[i * 3 + 2];
+    }
+
+    /**
+     * Visible state of board for {@link SessionRequest#TYPE_STATE}, closed fields don't reveal their data
+     *
+     * @return raw field values or null
+     */
+    public byte[] getBoard() {
+        return mBoard;
+    }
+
+    /**
+     * @return false if player stepped on mine
+     */
+    public boolean isAlive() {
+        return mAlive;
+    }
+}
@@ -0,0 +1,223 @@
+package com.scurab.minesweeper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless game server for many concurrent games<br/>
+ * Sessions are partitioned by id, every partition is owned by one thread (small event loop pool),
+ * so moves in different partitions never contend and session itself doesn't need any locking.
+ * Sessions idle for {@link #DEFAULT_IDLE_MILLIS} are compacted by partition threads, see {@link #setAutoCompact(long)}.
+ */
+public class SessionServer {
+
+    /* Biggest board of one session, keeps memory of one session bounded */
+    public static final int MAX_SIZE = 1000;
+
+    /* Default idle time after which session is compacted */
+    public static final long DEFAULT_IDLE_MILLIS = 60 * 1000;
+
+    private static class Partition {
+        final ScheduledExecutorService executor;
+        /* accessed only from executor thread */
+        final HashMap<Long, GameSession> sessions = new HashMap<Long, GameSession>();
+        /* periodic compaction, null if it's off */
+        ScheduledFuture<?> compaction;
+
+        Partition(ScheduledExecutorService executor) {
+            this.executor = executor;
+        }
+    }
+
+    private final Partition[] mPartitions;
+
+    private final AtomicLong mIdGenerator = new AtomicLong();
+
+    private final AtomicInteger mSessions = new AtomicInteger();
+
+    /**
+     * @param partitions amount of threads, usually number of cpu cores
+     */
+    public SessionServer(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("At least one partition is necessary!");
+        }
+        mPartitions = new Partition[partitions];
+        for (int i = 0; i < partitions; i++) {
+            final String name = "SessionPartition-" + i;
+            mPartitions[i] = new Partition(Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, name);
+                    t.setDaemon(true);
+                    return t;
+                }
+            }));
+        }
+        setAutoCompact(DEFAULT_IDLE_MILLIS);
+    }
+
+    private Partition getPartition(long sessionId) {
+        return mPartitions[(int) (sessionId % mPartitions.length)];
+    }
+
+    /**
+     * Start new game
+     *
+     * @param size  at most {@link #MAX_SIZE}
+     * @param mines
+     * @return future with id of session
+     * @throws IllegalArgumentException if size or mines are out of range
+     */
+    public Future<Long> createSession(final int size, final int mines) {
+        if (size < 3 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Size must be in range 3.." + MAX_SIZE + ", was:" + size);
+        }
+        if (mines < 0 || mines > size * size) {
+            throw new IllegalArgumentException("Invalid number of mines:" + mines);
+        }
+        final long id = mIdGenerator.incrementAndGet();
+        final Partition p = getPartition(id);
+        return p.executor.submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                p.sessions.put(id, new GameSession(id, size, mines));
+                mSessions.incrementAndGet();
+                return id;
+            }
+        });
+    }
+
+    /**
+     * Remove finished game
+     *
+     * @param sessionId
+     * @return future with true if session existed
+     */
+    public Future<Boolean> removeSession(final long sessionId) {
+        final Partition p = getPartition(sessionId);
+        return p.executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                boolean removed = p.sessions.remove(sessionId) != null;
+                if (removed) {
+                    mSessions.decrementAndGet();
+                }
+                return removed;
+            }
+        });
+    }
+
+    /**
+     * Execute request in partition of session
+     *
+     * @param request
+     * @return future with response, fails with {@link IllegalArgumentException} for unknown session
+     */
+    public Future<SessionResponse> submit(final SessionRequest request) {
+        final Partition p = getPartition(request.sessionId);
+        return p.executor.submit(new Callable<SessionResponse>() {
+            @Override
+            public SessionResponse call() throws Exception {
+                GameSession session = p.sessions.get(request.sessionId);
+                if (session == null) {
+                    throw new IllegalArgumentException("Unknown session:" + request.sessionId);
+                }
+                return session.execute(request);
+            }
+        });
+    }
+
+    /**
+     * Pack all sessions which weren't used for given time
+     *
+     * @param idleMillis
+     * @return amount of compacted sessions
+     */
+    public int compactIdle(final long idleMillis) throws InterruptedException {
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (final Partition p : mPartitions) {
+            results.add(p.executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return compact(p, idleMillis);
+                }
+            }));
+        }
+        int result = 0;
+        for (Future<Integer> f : results) {
+            try {
+                result += f.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compact idle sessions periodically on partition threads, {@link #DEFAULT_IDLE_MILLIS} is used by default
+     *
+     * @param idleMillis idle time of session, partitions check their sessions with same period, 0 to stop
+     */
+    public synchronized void setAutoCompact(final long idleMillis) {
+        for (final Partition p : mPartitions) {
+            if (p.compaction != null) {
+                p.compaction.cancel(false);
+                p.compaction = null;
+            }
+            if (idleMillis > 0) {
+                p.compaction = p.executor.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        compact(p, idleMillis);
+                    }
+                }, idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Call only on thread of partition
+     *
+     * @return amount of compacted sessions
+     */
+    private static int compact(Partition p, long idleMillis) {
+        final long limit = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        int compacted = 0;
+        Iterator<GameSession> iter = p.sessions.values().iterator();
+        while (iter.hasNext()) {
+            GameSession s = iter.next();
+            if (!s.isCompacted() && s.getLastAccess() < limit) {
+                s.compact();
+                compacted++;
+            }
+        }
+        return compacted;
+    }
+
+    /**
+     * @return amount of resident sessions
+     */
+    public int getSessionCount() {
+        return mSessions.get();
+    }
+
+    public void shutdown() {
+        for (Partition p : mPartitions) {
+            p.executor.shutdown();
+        }
+    }
+}
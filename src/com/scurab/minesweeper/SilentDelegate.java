@@ -0,0 +1,30 @@
+package com.scurab.minesweeper;
+
+/**
+ * Delegate ignoring everything, for games without UI, e.g. generating or loading of board
+ */
+class SilentDelegate implements MineSweeper.MineSweeperDelegate {
+    @Override
+    public void onSaveStep(int row, int column, int adjacents) {
+    }
+
+    @Override
+    public void onMineStep(int row, int column) {
+    }
+
+    @Override
+    public void onShowFlag(int row, int column) {
+    }
+
+    @Override
+    public void onShowHelp(int row, int column, int data) {
+    }
+
+    @Override
+    public void onReset(int row, int column) {
+    }
+
+    @Override
+    public void onBatchUpdate(CellBatch batch) {
+    }
+}
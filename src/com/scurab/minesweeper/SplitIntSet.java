@@ -0,0 +1,107 @@
+package com.scurab.minesweeper;
+
+/**
+ * Set of ints in range [0, capacity) divided into two parts, with O(1) add, remove and random access in any part<br/>
+ * Values of first part are kept in dense array before boundary, values of second part after it,
+ * one position map serves both parts. Order of values is not stable.
+ */
+class SplitIntSet {
+
+    private final int[] mValues;
+
+    /* position + 1 of value in mValues, 0 if value is not present */
+    private final int[] mPositions;
+
+    /* values in first part, positions [0, mFirst) */
+    private int mFirst;
+
+    private int mSize;
+
+    SplitIntSet(int capacity) {
+        mValues = new int[capacity];
+        mPositions = new int[capacity];
+    }
+
+    /**
+     * @param value must not be present
+     * @param first true for first part
+     */
+    void add(int value, boolean first) {
+        if (first) {
+            //first value of second part moves to the end to free the boundary
+            move(mFirst, mSize);
+            put(value, mFirst);
+            mFirst++;
+        } else {
+            put(value, mSize);
+        }
+        mSize++;
+    }
+
+    /**
+     * @param value
+     * @return true if value was present
+     */
+    boolean remove(int value) {
+        int pos = mPositions[value] - 1;
+        if (pos < 0) {
+            return false;
+        }
+        mPositions[value] = 0;
+        if (pos < mFirst) {
+            //last value of first part fills the hole, last value of all fills the boundary
+            mFirst--;
+            move(mFirst, pos);
+            pos = mFirst;
+        }
+        move(mSize - 1, pos);
+        mSize--;
+        return true;
+    }
+
+    private void put(int value, int pos) {
+        mValues[pos] = value;
+        mPositions[value] = pos + 1;
+    }
+
+    /* move value from position, nothing if the position is empty or same */
+    private void move(int from, int to) {
+        if (from != to && from < mSize) {
+            put(mValues[from], to);
+        }
+    }
+
+    boolean contains(int value) {
+        return mPositions[value] != 0;
+    }
+
+    /**
+     * @param i position in range [0, size)
+     * @return value at position, values of first part are in range [0, firstSize)
+     */
+    int get(int i) {
+        if (i >= mSize) {
+            throw new IndexOutOfBoundsException("Index:" + i + " size:" + mSize);
+        }
+        return mValues[i];
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    int firstSize() {
+        return mFirst;
+    }
+
+    /**
+     * Remove all values, O(size)
+     */
+    void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mPositions[mValues[i]] = 0;
+        }
+        mFirst = 0;
+        mSize = 0;
+    }
+}
@@ -0,0 +1,313 @@
+package com.scurab.minesweeper;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Shape of board and neighbourhood of its fields<br/>
+ * <p/>
+ * Neighbours of regular shapes (square, torus, hex) are computed from row and column, so they need no memory per field.
+ * Irregular (masked) shapes are compiled once into compressed sparse row arrays,
+ * neighbours of field i are neighbours[offsets[i]] .. neighbours[offsets[i + 1] - 1].
+ * Topologies are immutable and cached, so boards of same shape share one instance.
+ * Cache keeps them softly, entries of collected topologies are removed on next lookup.
+ * <p/>
+ * All shapes live in size x size grid, fields outside of mask are inactive
+ * (no neighbours, never mine, never opened).
+ */
+public final class Topology {
+
+    static final int KIND_SQUARE = 0;
+    static final int KIND_TORUS = 1;
+    static final int KIND_HEX = 2;
+
+    /* max amount of neighbours of one field */
+    public static final int MAX_NEIGHBOURS = 8;
+
+    /* size * size must fit into int */
+    public static final int MAX_SIZE = 46340;
+
+    /* neighbour offsets (row, column) in NW, N, NE, W, E, SW, S, SE order */
+    private static final int[][] SQUARE_WAYS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+    /* "odd-r" hex layout, odd rows are shifted right by half of field */
+    private static final int[][] HEX_WAYS_EVEN = {{-1, -1}, {-1, 0}, {0, -1}, {0, 1}, {1, -1}, {1, 0}};
+    private static final int[][] HEX_WAYS_ODD = {{-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, 0}, {1, 1}};
+
+    private static final HashMap<Key, CacheRef> sCache = new HashMap<Key, CacheRef>();
+
+    /* collected topologies, their keys (with masks) are removed from cache */
+    private static final ReferenceQueue<Topology> sCollected = new ReferenceQueue<Topology>();
+
+    private final int mKind;
+
+    private final int mSize;
+
+    /* null if all fields are active */
+    private final boolean[] mActive;
+
+    private final int mActiveCount;
+
+    /* CSR adjacency of irregular shape, null for regular shapes */
+    private final int[] mOffsets;
+    private final int[] mNeighbours;
+
+    private Topology(int kind, int size, boolean[] active, int[] offsets, int[] neighbours) {
+        mKind = kind;
+        mSize = size;
+        mActive = active;
+        mOffsets = offsets;
+        mNeighbours = neighbours;
+        int count = size * size;
+        if (active != null) {
+            count = 0;
+            for (boolean a : active) {
+                count += a ? 1 : 0;
+            }
+        }
+        mActiveCount = count;
+    }
+
+    /**
+     * Classic board with hard edges
+     *
+     * @param size
+     * @return
+     */
+    public static Topology square(int size) {
+        return get(new Key(KIND_SQUARE, size, null));
+    }
+
+    /**
+     * Board where edges wrap around
+     *
+     * @param size
+     * @return
+     */
+    public static Topology torus(int size) {
+        return get(new Key(KIND_TORUS, size, null));
+    }
+
+    /**
+     * Hexagonal board, every field has up to 6 neighbours
+     *
+     * @param size
+     * @return
+     */
+    public static Topology hex(int size) {
+        return get(new Key(KIND_HEX, size, null));
+    }
+
+    /**
+     * Irregular board, square neighbourhood restricted to active fields
+     *
+     * @param size
+     * @param active size * size flags, true for fields which are part of board
+     * @return
+     */
+    public static Topology masked(int size, boolean[] active) {
+        if (active == null || active.length != size * size) {
+            throw new IllegalArgumentException("Mask must have size * size items!");
+        }
+        return get(new Key(KIND_SQUARE, size, active.clone()));
+    }
+
+    /**
+     * @param kind one of KIND_ constants
+     * @param size
+     * @param mask null for all fields active, not copied, caller must not change it anymore
+     * @return
+     */
+    static Topology of(int kind, int size, boolean[] mask) {
+        if (kind != KIND_SQUARE && kind != KIND_TORUS && kind != KIND_HEX) {
+            throw new IllegalArgumentException("Unknown kind:" + kind);
+        }
+        if (mask != null && mask.length != size * size) {
+            throw new IllegalArgumentException("Mask must have size * size items!");
+        }
+        return get(new Key(kind, size, mask));
+    }
+
+    private static Topology get(Key key) {
+        if (key.size < 3) {
+            throw new IllegalArgumentException("Size of field must be at least 3 (3x3)!");
+        }
+        if (key.size > MAX_SIZE) {
+            throw new IllegalArgumentException("Size of field can't be bigger than " + MAX_SIZE + "!");
+        }
+        synchronized (sCache) {
+            purge();
+            CacheRef ref = sCache.get(key);
+            Topology result = ref != null ? ref.get() : null;
+            if (result == null) {
+                result = compile(key);
+                sCache.put(key, new CacheRef(key, result));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Remove entries of collected topologies, call only with lock of cache
+     */
+    private static void purge() {
+        CacheRef ref;
+        while ((ref = (CacheRef) sCollected.poll()) != null) {
+            //key can already belong to newer topology
+            if (sCache.get(ref.key) == ref) {
+                sCache.remove(ref.key);
+            }
+        }
+    }
+
+    private static Topology compile(Key key) {
+        final int size = key.size;
+        final boolean[] active = key.mask;
+        if (active == null) {
+            //regular shape, neighbours are computed on demand
+            return new Topology(key.kind, size, null, null, null);
+        }
+        final int fields = size * size;
+        int[] offsets = new int[fields + 1];
+        IntList neighbours = new IntList();
+        int[] around = new int[MAX_NEIGHBOURS];
+        for (int index = 0; index < fields; index++) {
+            offsets[index] = neighbours.size();
+            if (!active[index]) {
+                continue;
+            }
+            for (int i = 0, n = collect(key.kind, size, index, around); i < n; i++) {
+                if (active[around[i]]) {
+                    neighbours.add(around[i]);
+                }
+            }
+        }
+        offsets[fields] = neighbours.size();
+        return new Topology(key.kind, size, active, offsets, neighbours.toArray());
+    }
+
+    /**
+     * Neighbours of field in full grid
+     *
+     * @param kind
+     * @param size
+     * @param index
+     * @param out   at least {@link #MAX_NEIGHBOURS} items
+     * @return amount of neighbours in out
+     */
+    private static int collect(int kind, int size, int index, int[] out) {
+        final boolean wrap = kind == KIND_TORUS;
+        int row = index / size;
+        int column = index % size;
+        int[][] ways = kind != KIND_HEX ? SQUARE_WAYS : ((row & 1) == 0 ? HEX_WAYS_EVEN : HEX_WAYS_ODD);
+        int n = 0;
+        for (int[] way : ways) {
+            int r = row + way[0];
+            int c = column + way[1];
+            if (wrap) {
+                r = (r + size) % size;
+                c = (c + size) % size;
+            } else if (r < 0 || c < 0 || r >= size || c >= size) {
+                continue;
+            }
+            out[n++] = r * size + c;
+        }
+        return n;
+    }
+
+    /**
+     * @return sqrt of fields
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return one of KIND_ constants
+     */
+    int getKind() {
+        return mKind;
+    }
+
+    /**
+     * @return true if some fields are not part of board
+     */
+    boolean isMasked() {
+        return mActive != null;
+    }
+
+    /**
+     * @return true for classic board with hard edges and all fields active, see {@link #square(int)}
+     */
+    boolean isSquare() {
+        return mKind == KIND_SQUARE && mActive == null;
+    }
+
+    /**
+     * @param index
+     * @return true if field is part of board
+     */
+    public boolean isActive(int index) {
+        return mActive == null || mActive[index];
+    }
+
+    /**
+     * @return amount of fields which are part of board
+     */
+    public int getActiveCount() {
+        return mActiveCount;
+    }
+
+    /**
+     * Fill neighbours of field, always in same order
+     *
+     * @param index
+     * @param out   at least {@link #MAX_NEIGHBOURS} items
+     * @return amount of neighbours in out
+     */
+    public int getNeighbours(int index, int[] out) {
+        if (mOffsets == null) {
+            return collect(mKind, mSize, index, out);
+        }
+        int from = mOffsets[index];
+        int n = mOffsets[index + 1] - from;
+        System.arraycopy(mNeighbours, from, out, 0, n);
+        return n;
+    }
+
+    private static final class CacheRef extends SoftReference<Topology> {
+        final Key key;
+
+        CacheRef(Key key, Topology topology) {
+            super(topology, sCollected);
+            this.key = key;
+        }
+    }
+
+    private static final class Key {
+        final int kind;
+        final int size;
+        final boolean[] mask;
+
+        Key(int kind, int size, boolean[] mask) {
+            this.kind = kind;
+            this.size = size;
+            this.mask = mask;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return kind == k.kind && size == k.size && Arrays.equals(mask, k.mask);
+        }
+
+        @Override
+        public int hashCode() {
+            return (kind * 31 + size) * 31 + Arrays.hashCode(mask);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.scurab.minesweeper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact list of UI changes produced by one command on game thread, applied later on UI thread<br/>
+ * While recording it's the delegate of game, {@link #apply(MineSweeper.MineSweeperDelegate)} replays
+ * all callbacks in the same order into real UI delegate.
+ * Diff carries also states of touched fields, so UI thread can keep its own copy of states, see {@link #applyStates(int[])}.
+ */
+class UiDiff implements MineSweeper.MineSweeperDelegate {
+
+    private static final int OP_SAVE_STEP = 1;
+    private static final int OP_MINE_STEP = 2;
+    private static final int OP_SHOW_FLAG = 3;
+    private static final int OP_SHOW_HELP = 4;
+    private static final int OP_RESET = 5;
+    private static final int OP_BATCH = 6;
+
+    /* triples of (op, row << 16 | column, data) */
+    private final IntList mOps = new IntList(64);
+
+    private final List<CellBatch> mBatches = new ArrayList<CellBatch>(1);
+
+    /* pairs of (index, state) of touched fields after command */
+    private final IntList mStates = new IntList(16);
+
+    /* System.nanoTime() of input which caused this diff */
+    long inputTime;
+
+    /* game generation, diffs of old games are ignored */
+    int generation;
+
+    /* optional result of command, e.g. finishGame */
+    boolean result;
+
+    private void add(int op, int row, int column, int data) {
+        mOps.add(op);
+        mOps.add((row << 16) | column);
+        mOps.add(data);
+    }
+
+    boolean isEmpty() {
+        return mOps.size() == 0;
+    }
+
+    /**
+     * Record states of all fields touched by recorded callbacks, call on game thread when command is done
+     *
+     * @param game
+     */
+    void captureStates(MineSweeper game) {
+        final int size = game.getSize();
+        for (int i = 0, n = mOps.size(); i < n; i += 3) {
+            int op = mOps.get(i);
+            if (op == OP_BATCH) {
+                CellBatch batch = mBatches.get(mOps.get(i + 2));
+                for (int j = 0, m = batch.size(); j < m; j++) {
+                    captureState(game, batch.getIndex(j));
+                }
+            } else {
+                int cell = mOps.get(i + 1);
+                captureState(game, (cell >>> 16) * size + (cell & 0xFFFF));
+            }
+        }
+    }
+
+    private void captureState(MineSweeper game, int index) {
+        mStates.add(index);
+        mStates.add(game.getValue(index) & MineSweeper.MASK_STATE);
+    }
+
+    /**
+     * Write captured states
+     *
+     * @param states states of all fields, indexed same as game
+     */
+    void applyStates(int[] states) {
+        for (int i = 0, n = mStates.size(); i < n; i += 2) {
+            states[mStates.get(i)] = mStates.get(i + 1);
+        }
+    }
+
+    /**
+     * Replay recorded callbacks
+     *
+     * @param delegate
+     */
+    void apply(MineSweeper.MineSweeperDelegate delegate) {
+        for (int i = 0, n = mOps.size(); i < n; i += 3) {
+            int op = mOps.get(i);
+            int row = mOps.get(i + 1) >>> 16;
+            int column = mOps.get(i + 1) & 0xFFFF;
+            int data = mOps.get(i + 2);
+            switch (op) {
+                case OP_SAVE_STEP:
+                    delegate.onSaveStep(row, column, data);
+                    break;
+                case OP_MINE_STEP:
+                    delegate.onMineStep(row, column);
+                    break;
+                case OP_SHOW_FLAG:
+                    delegate.onShowFlag(row, column);
+                    break;
+                case OP_SHOW_HELP:
+                    delegate.onShowHelp(row, column, data);
+                    break;
+                case OP_RESET:
+                    delegate.onReset(row, column);
+                    break;
+                case OP_BATCH:
+                    delegate.onBatchUpdate(mBatches.get(data));
+                    break;
+            }
+        }
+    }
+
+    //region delegate
+    @Override
+    public void onSaveStep(int row, int column, int adjacents) {
+        add(OP_SAVE_STEP, row, column, adjacents);
+    }
+
+    @Override
+    public void onMineStep(int row, int column) {
+        add(OP_MINE_STEP, row, column, 0);
+    }
+
+    @Override
+    public void onShowFlag(int row, int column) {
+        add(OP_SHOW_FLAG, row, column, 0);
+    }
+
+    @Override
+    public void onShowHelp(int row, int column, int data) {
+        add(OP_SHOW_HELP, row, column, data);
+    }
+
+    @Override
+    public void onReset(int row, int column) {
+        add(OP_RESET, row, column, 0);
+    }
+
+    @Override
+    public void onBatchUpdate(CellBatch batch) {
+        mBatches.add(batch);
+        add(OP_BATCH, 0, 0, mBatches.size() - 1);
+    }
+    //endregion delegate
+}
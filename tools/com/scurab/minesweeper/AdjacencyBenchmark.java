@@ -0,0 +1,70 @@
+package com.scurab.minesweeper;
+
+import java.util.Random;
+
+/**
+ * Compares {@link BitBoard} adjacency counting with neighbour lists, JVM only, not part of app<br/>
+ * <p/>
+ * Usage: AdjacencyBenchmark [size] [density %] [iterations]
+ * <p/>
+ * First both ways are checked on random boards of many sizes, any difference ends with non zero exit code.
+ * Then both are timed on one big board after warm up.
+ */
+public class AdjacencyBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int density = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        Random random = new Random(size);
+        for (int s = 3; s <= 200; s++) {
+            for (int d : new int[]{0, 5, 20, 50, 100}) {
+                int[] mines = randomMines(random, s, d);
+                MineSweeper game = new MineSweeper(s, mines, new SilentDelegate());
+                game.generateAdjacentsByNeighbours();
+                int[] expected = game.saveInstance();
+                int[] actual = mines.clone();
+                BitBoard.fromField(actual, s).addAdjacents(actual);
+                for (int i = 0; i < expected.length; i++) {
+                    if (expected[i] != actual[i]) {
+                        System.err.println("Size " + s + " density " + d + "% differs at " + i + ": " + expected[i] + " vs " + actual[i]);
+                        System.exit(1);
+                    }
+                }
+            }
+        }
+        System.out.println("Differential check OK");
+
+        int[] mines = randomMines(random, size, density);
+        int[] work = new int[mines.length];
+        long sink = 0;
+        long neighbours = Long.MAX_VALUE;
+        long bitboard = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            MineSweeper game = new MineSweeper(size, mines, new SilentDelegate());
+            long start = System.nanoTime();
+            game.generateAdjacentsByNeighbours();
+            neighbours = Math.min(neighbours, System.nanoTime() - start);
+            sink += game.getValue(i % work.length);
+
+            System.arraycopy(mines, 0, work, 0, mines.length);
+            start = System.nanoTime();
+            BitBoard.fromField(work, size).addAdjacents(work);
+            bitboard = Math.min(bitboard, System.nanoTime() - start);
+            sink += work[i % work.length];
+        }
+        System.out.println(String.format("%dx%d %d%% best of %d: neighbours %.2fms, bitboard %.2fms, %.1fx (%d)",
+                size, size, density, iterations, neighbours / 1e6, bitboard / 1e6, neighbours / (double) bitboard, sink));
+    }
+
+    private static int[] randomMines(Random random, int size, int density) {
+        int[] result = new int[size * size];
+        for (int i = 0; i < result.length; i++) {
+            if (random.nextInt(100) < density) {
+                result[i] = MineSweeper.DATA_MINE;
+            }
+        }
+        return result;
+    }
+}
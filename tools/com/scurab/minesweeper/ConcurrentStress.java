@@ -0,0 +1,137 @@
+package com.scurab.minesweeper;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Stress check for {@link ConcurrentMineSweeper}, JVM only, not part of app<br/>
+ * <p/>
+ * Usage: ConcurrentStress [threads] [size] [mines] [rounds]
+ * <p/>
+ * Every round N threads hammer random fields of one board, first by steps only, then by steps and flags.
+ * After each phase final state is validated, any broken invariant ends with non zero exit code.
+ */
+public class ConcurrentStress {
+
+    private static class CountingDelegate extends SilentDelegate {
+        final AtomicIntegerArray opened;
+        final AtomicIntegerArray flags;
+        final int size;
+
+        CountingDelegate(int size) {
+            this.size = size;
+            opened = new AtomicIntegerArray(size * size);
+            flags = new AtomicIntegerArray(size * size);
+        }
+
+        @Override
+        public void onSaveStep(int row, int column, int adjacents) {
+            opened.incrementAndGet(row * size + column);
+        }
+
+        @Override
+        public void onMineStep(int row, int column) {
+            opened.incrementAndGet(row * size + column);
+        }
+
+        @Override
+        public void onShowFlag(int row, int column) {
+            flags.incrementAndGet(row * size + column);
+        }
+
+        @Override
+        public void onReset(int row, int column) {
+            flags.decrementAndGet(row * size + column);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int mines = args.length > 2 ? Integer.parseInt(args[2]) : size * size / 100;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        for (int round = 0; round < rounds; round++) {
+            CountingDelegate delegate = new CountingDelegate(size);
+            ConcurrentMineSweeper game = new ConcurrentMineSweeper(size, mines, delegate);
+
+            hammer(game, threads, size, round, false);
+            check(game, delegate, true);
+            hammer(game, threads, size, round, true);
+            check(game, delegate, false);
+            System.out.println("Round " + round + " OK, opened:" + game.getOpenedCount());
+        }
+    }
+
+    private static void hammer(final ConcurrentMineSweeper game, int threads, final int size, final int round, final boolean withFlags) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final int moves = size * 4;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final long seed = round * 1000L + t;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < moves; i++) {
+                        int row = random.nextInt(size);
+                        int column = random.nextInt(size);
+                        if (withFlags && random.nextBoolean()) {
+                            game.onFlag(row, column);
+                        } else {
+                            game.onStep(row, column);
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread t : workers) {
+            t.join();
+        }
+    }
+
+    private static void check(ConcurrentMineSweeper game, CountingDelegate delegate, boolean floodClosed) {
+        int size = game.getSize();
+        int[] data = game.saveInstance();
+        int opened = 0;
+        for (int i = 0; i < data.length; i++) {
+            int state = MineSweeper.getState(data[i]);
+            int reported = delegate.opened.get(i);
+            int flags = delegate.flags.get(i);
+            if (state == MineSweeper.STATE_OPEN) {
+                opened++;
+                assertTrue(reported == 1, "Field " + i + " opened but reported " + reported + "x");
+                assertTrue(flags == 0, "Field " + i + " opened but flagged");
+            } else {
+                assertTrue(reported == 0, "Field " + i + " closed but reported " + reported + "x");
+                assertTrue(flags == (state == MineSweeper.STATE_FLAG ? 1 : 0), "Field " + i + " flag mismatch:" + flags);
+            }
+            if (floodClosed && data[i] == MineSweeper.STATE_OPEN) {
+                //opened zero field => all zero neighbours must be opened as well
+                int row = i / size;
+                int column = i % size;
+                for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++) {
+                    for (int c = Math.max(0, column - 1); c <= Math.min(size - 1, column + 1); c++) {
+                        assertTrue(data[r * size + c] != MineSweeper.STATE_CLOSED, "Flood not closed around " + i);
+                    }
+                }
+            }
+        }
+        assertTrue(opened == game.getOpenedCount(), "Opened count mismatch " + opened + " vs " + game.getOpenedCount());
+    }
+
+    private static void assertTrue(boolean value, String msg) {
+        if (!value) {
+            System.err.println(msg);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,717 @@
+package com.scurab.minesweeper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Differential fuzzing of alternative engines against reference {@link MineSweeper}, JVM only, not part of app<br/>
+ * <p/>
+ * Usage: DifferentialFuzz [cases] [threads] [first seed] [candidate,...]
+ * <p/>
+ * Every case is given by its seed: topology, size, mines and moves. Board is generated by the harness
+ * with adjacents counted over neighbour lists. Reference and every candidate play same moves,
+ * after each move sequence of delegate callbacks and whole state must be same.
+ * Undo and redo of reference are checked also against snapshots kept by harness, see {@link HistoryOracle},
+ * so bug of shared {@link MoveHistory} can't hide behind same behaviour of both engines.
+ * First failure is shrunk to minimal list of moves and printed with its seed, any failure ends with non zero exit code.
+ */
+public class DifferentialFuzz {
+
+    private static final int MOVE_STEP = 0;
+    private static final int MOVE_FLAG = 1;
+    private static final int MOVE_CHORD = 2;
+    private static final int MOVE_UNDO = 3;
+    private static final int MOVE_REDO = 4;
+
+    private static final String[] MOVE_NAMES = {"STEP", "FLAG", "CHORD", "UNDO", "REDO"};
+
+    private static final int KIND_SQUARE = 0;
+    private static final int KIND_TORUS = 1;
+    private static final int KIND_HEX = 2;
+    private static final int KIND_MASKED = 3;
+
+    private static final String[] KIND_NAMES = {"square", "torus", "hex", "masked"};
+
+    /* masks are taken from small pool, topologies are cached by shape */
+    private static final int MASKS = 16;
+
+    private static final int MAX_SIZE = 16;
+
+    private static final int MAX_MOVES = 60;
+
+    /**
+     * Records delegate callbacks as (type, row, column, data) quads
+     */
+    private static class Recorder implements MineSweeper.MineSweeperDelegate {
+        static final int SAVE = 0;
+        static final int MINE = 1;
+        static final int FLAG = 2;
+        static final int HELP = 3;
+        static final int RESET = 4;
+        static final int BATCH = 5;
+        static final String[] NAMES = {"onSaveStep", "onMineStep", "onShowFlag", "onShowHelp", "onReset", "onBatchUpdate"};
+
+        final IntList events = new IntList();
+        final int size;
+        /* report every opened field only once per move */
+        final boolean dedupeSaveSteps;
+        final boolean[] reported;
+        final IntList reportedFields = new IntList();
+
+        Recorder(int size, boolean dedupeSaveSteps) {
+            this.size = size;
+            this.dedupeSaveSteps = dedupeSaveSteps;
+            reported = dedupeSaveSteps ? new boolean[size * size] : null;
+        }
+
+        void beginMove() {
+            events.clear();
+            if (dedupeSaveSteps) {
+                for (int i = 0, n = reportedFields.size(); i < n; i++) {
+                    reported[reportedFields.get(i)] = false;
+                }
+                reportedFields.clear();
+            }
+        }
+
+        private void add(int type, int row, int column, int data) {
+            events.add(type);
+            events.add(row);
+            events.add(column);
+            events.add(data);
+        }
+
+        @Override
+        public void onSaveStep(int row, int column, int adjacents) {
+            if (dedupeSaveSteps) {
+                int index = row * size + column;
+                if (reported[index]) {
+                    return;
+                }
+                reported[index] = true;
+                reportedFields.add(index);
+            }
+            add(SAVE, row, column, adjacents);
+        }
+
+        @Override
+        public void onMineStep(int row, int column) {
+            add(MINE, row, column, 0);
+        }
+
+        @Override
+        public void onShowFlag(int row, int column) {
+            add(FLAG, row, column, 0);
+        }
+
+        @Override
+        public void onShowHelp(int row, int column, int data) {
+            add(HELP, row, column, data);
+        }
+
+        @Override
+        public void onReset(int row, int column) {
+            add(RESET, row, column, 0);
+        }
+
+        @Override
+        public void onBatchUpdate(CellBatch batch) {
+            for (int i = 0, n = batch.size(); i < n; i++) {
+                int index = batch.getIndex(i);
+                add(BATCH, index / size, index % size, batch.getValue(i));
+            }
+        }
+    }
+
+    private interface Engine {
+        void move(int type, int row, int column) throws Exception;
+
+        int[] state();
+    }
+
+    private static abstract class Candidate {
+        final String name;
+
+        Candidate(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return true if candidate reports every opened field once, reference reports start of flood twice
+         */
+        boolean isDedupingSaveSteps() {
+            return false;
+        }
+
+        boolean supportsTopology(int kind) {
+            return true;
+        }
+
+        boolean supportsMove(int move) {
+            return true;
+        }
+
+        abstract Engine create(Topology topology, int[] board, Recorder recorder) throws Exception;
+    }
+
+    private static class ReferenceEngine implements Engine {
+        MineSweeper game;
+
+        ReferenceEngine(MineSweeper game) {
+            this.game = game;
+        }
+
+        @Override
+        public void move(int type, int row, int column) throws Exception {
+            switch (type) {
+                case MOVE_STEP:
+                    game.onStep(row, column);
+                    break;
+                case MOVE_FLAG:
+                    game.onFlag(row, column);
+                    break;
+                case MOVE_CHORD:
+                    game.onChord(row, column);
+                    break;
+                case MOVE_UNDO:
+                    game.undo();
+                    break;
+                case MOVE_REDO:
+                    game.redo();
+                    break;
+            }
+        }
+
+        @Override
+        public int[] state() {
+            return game.saveInstance();
+        }
+    }
+
+    private static final Candidate[] CANDIDATES = {
+            //CAS based board, no chord and no history
+            new Candidate("concurrent") {
+                @Override
+                boolean isDedupingSaveSteps() {
+                    return true;
+                }
+
+                @Override
+                boolean supportsMove(int move) {
+                    return move == MOVE_STEP || move == MOVE_FLAG;
+                }
+
+                @Override
+                Engine create(Topology topology, int[] board, Recorder recorder) {
+                    final ConcurrentMineSweeper game = new ConcurrentMineSweeper(topology, board, recorder);
+                    return new Engine() {
+                        @Override
+                        public void move(int type, int row, int column) {
+                            if (type == MOVE_STEP) {
+                                game.onStep(row, column);
+                            } else {
+                                game.onFlag(row, column);
+                            }
+                        }
+
+                        @Override
+                        public int[] state() {
+                            return game.saveInstance();
+                        }
+                    };
+                }
+            },
+            //board with adjacents from BitBoard
+            new Candidate("bitboard") {
+                @Override
+                boolean supportsTopology(int kind) {
+                    return kind == KIND_SQUARE;
+                }
+
+                @Override
+                Engine create(Topology topology, int[] board, Recorder recorder) {
+                    int[] data = new int[board.length];
+                    for (int i = 0; i < data.length; i++) {
+                        data[i] = MineSweeper.getData(board[i]) == MineSweeper.DATA_MINE ? MineSweeper.DATA_MINE : 0;
+                    }
+                    BitBoard.fromField(data, topology.getSize()).addAdjacents(data);
+                    return new ReferenceEngine(new MineSweeper(topology, data, recorder));
+                }
+            },
+            //saved by BoardFormat and loaded again after every move
+            new Candidate("format") {
+                @Override
+                boolean supportsMove(int move) {
+                    return move != MOVE_UNDO && move != MOVE_REDO;
+                }
+
+                @Override
+                Engine create(Topology topology, int[] board, final Recorder recorder) {
+                    return new ReferenceEngine(new MineSweeper(topology, board, recorder)) {
+                        @Override
+                        public void move(int type, int row, int column) throws Exception {
+                            super.move(type, row, column);
+                            ByteArrayOutputStream out = new ByteArrayOutputStream();
+                            BoardFormat.write(game, Channels.newChannel(out));
+                            game = BoardFormat.read(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())), recorder);
+                        }
+                    };
+                }
+            },
+            //only packed states are kept between moves
+            new Candidate("states") {
+                @Override
+                boolean supportsMove(int move) {
+                    return move != MOVE_UNDO && move != MOVE_REDO;
+                }
+
+                @Override
+                Engine create(final Topology topology, final int[] board, final Recorder recorder) {
+                    return new ReferenceEngine(new MineSweeper(topology, board, recorder)) {
+                        @Override
+                        public void move(int type, int row, int column) throws Exception {
+                            super.move(type, row, column);
+                            int[] states = game.saveStates();
+                            game = new MineSweeper(topology, board, recorder);
+                            game.restoreStates(states);
+                        }
+                    };
+                }
+            },
+    };
+
+    /**
+     * Expected state after undo and redo, given by snapshots taken around every move, independent of {@link MoveHistory}<br/>
+     * Stepping on mine isn't part of history, snapshots can't describe undo after that, so checking stops there.
+     */
+    private static class HistoryOracle {
+        /* pairs of states before and after move */
+        private final List<int[][]> mUndo = new ArrayList<int[][]>();
+        private final List<int[][]> mRedo = new ArrayList<int[][]>();
+        private boolean mActive = true;
+
+        /**
+         * @param type   move
+         * @param before state before move
+         * @param after  state after move
+         * @return description of difference, null if state is as expected
+         */
+        String onMove(int type, int[] before, int[] after) {
+            if (!mActive) {
+                return null;
+            }
+            if (type == MOVE_UNDO || type == MOVE_REDO) {
+                List<int[][]> from = type == MOVE_UNDO ? mUndo : mRedo;
+                int[] expected = before;
+                if (!from.isEmpty()) {
+                    int[][] move = from.remove(from.size() - 1);
+                    (type == MOVE_UNDO ? mRedo : mUndo).add(move);
+                    expected = move[type == MOVE_UNDO ? 0 : 1];
+                }
+                String diff = compareState(expected, after);
+                return diff != null ? "history " + diff : null;
+            }
+            if (hasOpenedMine(before, after)) {
+                mActive = false;
+            } else if (compareState(before, after) != null) {
+                mUndo.add(new int[][]{before, after});
+                mRedo.clear();
+            }
+            return null;
+        }
+
+        private static boolean hasOpenedMine(int[] before, int[] after) {
+            for (int i = 0; i < after.length; i++) {
+                if (after[i] != before[i] && after[i] == (MineSweeper.DATA_MINE | MineSweeper.STATE_OPEN)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * One generated case, moves are (type, row, column) triples
+     */
+    private static class Case {
+        long seed;
+        int kind;
+        int size;
+        int mask;
+        int mines;
+        int[] moves;
+
+        Case copy(int mines, int[] moves) {
+            Case result = new Case();
+            result.seed = seed;
+            result.kind = kind;
+            result.size = size;
+            result.mask = mask;
+            result.mines = mines;
+            result.moves = moves;
+            return result;
+        }
+    }
+
+    private static class Failure {
+        final Candidate candidate;
+        final Case c;
+        final String message;
+
+        Failure(Candidate candidate, Case c, String message) {
+            this.candidate = candidate;
+            this.c = c;
+            this.message = message;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final long cases = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final long firstSeed = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        final Candidate[] candidates = args.length > 3 ? select(args[3].split(",")) : CANDIDATES;
+
+        final AtomicLong next = new AtomicLong();
+        final AtomicLong checked = new AtomicLong();
+        final AtomicReference<Failure> failure = new AtomicReference<Failure>();
+        final CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long i;
+                        while (failure.get() == null && (i = next.getAndIncrement()) < cases) {
+                            Case c = generate(firstSeed + i);
+                            for (Candidate candidate : candidates) {
+                                String msg = check(candidate, filter(candidate, c));
+                                if (msg != null) {
+                                    failure.compareAndSet(null, new Failure(candidate, filter(candidate, c), msg));
+                                    break;
+                                }
+                            }
+                            checked.incrementAndGet();
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            worker.start();
+        }
+        while (!done.await(5, TimeUnit.SECONDS)) {
+            System.out.println("Checked " + checked.get() + "/" + cases);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Failure f = failure.get();
+        if (f == null) {
+            System.out.println(String.format("OK %d cases, %d candidates, %d threads in %.1fs (%.0f cases/sec)",
+                    checked.get(), candidates.length, threads, seconds, checked.get() / seconds));
+            return;
+        }
+        System.out.println("FAILED " + f.candidate.name + " seed:" + f.c.seed + " " + f.message);
+        Case minimal = shrink(f.candidate, f.c);
+        System.out.println("Minimal reproducer:");
+        print(f.candidate, minimal);
+        System.exit(1);
+    }
+
+    private static Candidate[] select(String[] names) {
+        List<Candidate> result = new ArrayList<Candidate>();
+        for (String name : names) {
+            boolean found = false;
+            for (Candidate c : CANDIDATES) {
+                if (c.name.equals(name)) {
+                    result.add(c);
+                    found = true;
+                }
+            }
+            if (!found) {
+                throw new IllegalArgumentException("Unknown candidate:" + name);
+            }
+        }
+        return result.toArray(new Candidate[result.size()]);
+    }
+
+    private static Case generate(long seed) {
+        //consecutive seeds give almost same first values of Random, spread them first
+        Random random = new Random(seed * 0x9E3779B97F4A7C15L);
+        Case c = new Case();
+        c.seed = seed;
+        c.kind = random.nextInt(4);
+        c.size = 3 + random.nextInt(MAX_SIZE - 2);
+        c.mask = random.nextInt(MASKS);
+        int active = topology(c).getActiveCount();
+        //mostly sparse boards with big floods, sometimes dense
+        c.mines = random.nextInt(4) == 0 ? random.nextInt(active + 1) : random.nextInt(active / 5 + 1);
+        int[] board = board(c);
+
+        IntList mines = new IntList();
+        IntList safe = new IntList();
+        IntList numbers = new IntList();
+        for (int i = 0; i < board.length; i++) {
+            int data = MineSweeper.getData(board[i]);
+            if (data == MineSweeper.DATA_MINE) {
+                mines.add(i);
+            } else if (topology(c).isActive(i)) {
+                safe.add(i);
+                if (data > 0) {
+                    numbers.add(i);
+                }
+            }
+        }
+
+        int count = 1 + random.nextInt(MAX_MOVES);
+        IntList moves = new IntList(count * 3);
+        for (int m = 0; m < count; m++) {
+            int p = random.nextInt(100);
+            int type;
+            int index;
+            if (p < 25) {
+                type = MOVE_STEP;
+                index = pick(random, safe, board.length);
+            } else if (p < 40) {
+                type = MOVE_STEP;
+                index = random.nextInt(board.length);
+            } else if (p < 55) {
+                type = MOVE_FLAG;
+                index = pick(random, mines, board.length);
+            } else if (p < 65) {
+                type = MOVE_FLAG;
+                index = random.nextInt(board.length);
+            } else if (p < 80) {
+                type = MOVE_CHORD;
+                index = pick(random, numbers, board.length);
+            } else {
+                type = p < 90 ? MOVE_UNDO : MOVE_REDO;
+                index = 0;
+            }
+            moves.add(type);
+            moves.add(index / c.size);
+            moves.add(index % c.size);
+        }
+        c.moves = moves.toArray();
+        return c;
+    }
+
+    /**
+     * @return random item of list or random field if list is empty
+     */
+    private static int pick(Random random, IntList list, int fields) {
+        return list.size() > 0 ? list.get(random.nextInt(list.size())) : random.nextInt(fields);
+    }
+
+    private static Topology topology(Case c) {
+        switch (c.kind) {
+            case KIND_TORUS:
+                return Topology.torus(c.size);
+            case KIND_HEX:
+                return Topology.hex(c.size);
+            case KIND_MASKED:
+                Random random = new Random(c.size * MASKS + c.mask);
+                boolean[] mask = new boolean[c.size * c.size];
+                for (int i = 0; i < mask.length; i++) {
+                    mask[i] = random.nextInt(100) < 85;
+                }
+                return Topology.masked(c.size, mask);
+            default:
+                return Topology.square(c.size);
+        }
+    }
+
+    /**
+     * @return closed board of case, adjacents counted over neighbour lists
+     */
+    private static int[] board(Case c) {
+        Topology topology = topology(c);
+        Random random = new Random(c.seed * 31 + c.mines);
+        int[] data = new int[c.size * c.size];
+        IntList active = new IntList();
+        for (int i = 0; i < data.length; i++) {
+            if (topology.isActive(i)) {
+                active.add(i);
+            }
+        }
+        int[] fields = active.toArray();
+        int mines = Math.min(c.mines, fields.length);
+        for (int i = 0; i < mines; i++) {
+            int r = i + random.nextInt(fields.length - i);
+            int v = fields[r];
+            fields[r] = fields[i];
+            fields[i] = v;
+            data[v] = MineSweeper.DATA_MINE;
+        }
+        MineSweeper game = new MineSweeper(topology, data, new SilentDelegate());
+        game.generateAdjacentsByNeighbours();
+        return game.saveInstance();
+    }
+
+    /**
+     * @return case with only moves supported by candidate, same case if there is no unsupported move
+     */
+    private static Case filter(Candidate candidate, Case c) {
+        IntList moves = new IntList(c.moves.length);
+        for (int i = 0; i < c.moves.length; i += 3) {
+            if (candidate.supportsMove(c.moves[i])) {
+                moves.add(c.moves[i]);
+                moves.add(c.moves[i + 1]);
+                moves.add(c.moves[i + 2]);
+            }
+        }
+        return moves.size() == c.moves.length ? c : c.copy(c.mines, moves.toArray());
+    }
+
+    /**
+     * Play case on reference and candidate
+     *
+     * @return description of first difference, null if both behave same
+     */
+    private static String check(Candidate candidate, Case c) {
+        if (!candidate.supportsTopology(c.kind)) {
+            return null;
+        }
+        int move = -1;
+        try {
+            Topology topology = topology(c);
+            int[] board = board(c);
+            Recorder expected = new Recorder(c.size, candidate.isDedupingSaveSteps());
+            Recorder actual = new Recorder(c.size, false);
+            ReferenceEngine reference = new ReferenceEngine(new MineSweeper(topology, board, expected));
+            HistoryOracle history = new HistoryOracle();
+            Engine engine = candidate.create(topology, board, actual);
+            String diff = compareState(reference.state(), engine.state());
+            if (diff != null) {
+                return "initial state " + diff;
+            }
+            for (move = 0; move < c.moves.length / 3; move++) {
+                int type = c.moves[move * 3];
+                int row = c.moves[move * 3 + 1];
+                int column = c.moves[move * 3 + 2];
+                expected.beginMove();
+                actual.beginMove();
+                int[] before = reference.state();
+                reference.move(type, row, column);
+                engine.move(type, row, column);
+                diff = history.onMove(type, before, reference.state());
+                if (diff == null) {
+                    diff = compareEvents(expected.events, actual.events);
+                }
+                if (diff == null) {
+                    diff = compareState(reference.state(), engine.state());
+                }
+                if (diff != null) {
+                    return "move " + move + " " + MOVE_NAMES[type] + " " + row + "x" + column + ": " + diff;
+                }
+            }
+            return null;
+        } catch (Throwable e) {
+            return "move " + move + ": " + e;
+        }
+    }
+
+    private static String compareEvents(IntList expected, IntList actual) {
+        int n = Math.min(expected.size(), actual.size());
+        for (int i = 0; i < n; i += 4) {
+            for (int j = 0; j < 4; j++) {
+                if (expected.get(i + j) != actual.get(i + j)) {
+                    return "callback " + (i / 4) + " expected " + event(expected, i) + " but was " + event(actual, i);
+                }
+            }
+        }
+        if (expected.size() != actual.size()) {
+            return "expected " + expected.size() / 4 + " callbacks but was " + actual.size() / 4
+                    + (expected.size() > n ? ", missing " + event(expected, n) : ", extra " + event(actual, n));
+        }
+        return null;
+    }
+
+    private static String event(IntList events, int i) {
+        return Recorder.NAMES[events.get(i)] + "(" + events.get(i + 1) + ", " + events.get(i + 2) + ", " + events.get(i + 3) + ")";
+    }
+
+    private static String compareState(int[] expected, int[] actual) {
+        if (expected.length != actual.length) {
+            return "state size " + expected.length + " vs " + actual.length;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i]) {
+                return "field " + i + " expected 0x" + Integer.toHexString(expected[i]) + " but was 0x" + Integer.toHexString(actual[i]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove moves and mines while case still fails
+     */
+    private static Case shrink(Candidate candidate, Case c) {
+        //moves, chunks from half of list down to single moves
+        int chunk = Math.max(1, c.moves.length / 3 / 2);
+        while (true) {
+            boolean removed = false;
+            for (int from = 0; from < c.moves.length / 3; ) {
+                int[] moves = remove(c.moves, from, chunk);
+                Case smaller = c.copy(c.mines, moves);
+                if (moves.length < c.moves.length && check(candidate, smaller) != null) {
+                    c = smaller;
+                    removed = true;
+                } else {
+                    from += chunk;
+                }
+            }
+            if (!removed) {
+                if (chunk == 1) {
+                    break;
+                }
+                chunk = Math.max(1, chunk / 2);
+            }
+        }
+        //mines, layout changes but moves keep their fields
+        for (int mines = 0; mines < c.mines; mines++) {
+            Case smaller = c.copy(mines, c.moves);
+            if (check(candidate, smaller) != null) {
+                c = smaller;
+                break;
+            }
+        }
+        return c;
+    }
+
+    private static int[] remove(int[] moves, int from, int count) {
+        int start = from * 3;
+        int end = Math.min(moves.length, (from + count) * 3);
+        int[] result = new int[moves.length - (end - start)];
+        System.arraycopy(moves, 0, result, 0, start);
+        System.arraycopy(moves, end, result, start, moves.length - end);
+        return result;
+    }
+
+    private static void print(Candidate candidate, Case c) {
+        System.out.println("candidate:" + candidate.name + " seed:" + c.seed + " topology:" + KIND_NAMES[c.kind]
+                + (c.kind == KIND_MASKED ? "#" + c.mask : "") + " size:" + c.size + " mines:" + c.mines);
+        Topology topology = topology(c);
+        int[] board = board(c);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < board.length; i++) {
+            int data = MineSweeper.getData(board[i]);
+            sb.append(!topology.isActive(i) ? ' ' : data == MineSweeper.DATA_MINE ? '*' : (char) ('0' + data));
+            if (i % c.size == c.size - 1) {
+                sb.append('\n');
+            }
+        }
+        System.out.print(sb);
+        for (int i = 0; i < c.moves.length; i += 3) {
+            System.out.println("  " + MOVE_NAMES[c.moves[i]] + " " + c.moves[i + 1] + "x" + c.moves[i + 2]);
+        }
+        System.out.println(check(candidate, c));
+    }
+}
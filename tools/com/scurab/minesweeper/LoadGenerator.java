@@ -0,0 +1,218 @@
+package com.scurab.minesweeper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local load generator for {@link SessionServer}, JVM only, not part of app<br/>
+ * <p/>
+ * Usage: LoadGenerator [sessions] [size] [mines] [seconds] [workers] [inproc|loopback]
+ * <p/>
+ * Creates resident sessions, then workers play random moves in random sessions,
+ * finished games are replaced by new ones. Reports games/sec and move latency percentiles.
+ */
+public class LoadGenerator {
+
+    /* latency samples per worker */
+    private static final int SAMPLES = 1 << 18;
+
+    private interface Client {
+        /**
+         * @return false if game has finished
+         */
+        boolean step(long id, int row, int column) throws Exception;
+
+        long create() throws Exception;
+
+        void remove(long id) throws Exception;
+
+        void close() throws IOException;
+    }
+
+    private static class InProcessClient implements Client {
+        final SessionServer server;
+        final int size;
+        final int mines;
+
+        InProcessClient(SessionServer server, int size, int mines) {
+            this.server = server;
+            this.size = size;
+            this.mines = mines;
+        }
+
+        @Override
+        public boolean step(long id, int row, int column) throws Exception {
+            return server.submit(SessionRequest.step(id, row, column)).get().isAlive();
+        }
+
+        @Override
+        public long create() throws Exception {
+            return server.createSession(size, mines).get();
+        }
+
+        @Override
+        public void remove(long id) throws Exception {
+            server.removeSession(id).get();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class LoopbackClient implements Client {
+        final Socket socket;
+        final BufferedReader in;
+        final PrintWriter out;
+        final int size;
+        final int mines;
+
+        LoopbackClient(int port, int size, int mines) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            out = new PrintWriter(socket.getOutputStream());
+            this.size = size;
+            this.mines = mines;
+        }
+
+        private String call(String cmd) throws IOException {
+            out.println(cmd);
+            out.flush();
+            String result = in.readLine();
+            if (result == null || !result.startsWith("OK ")) {
+                throw new IOException("Failed:" + cmd + " -> " + result);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean step(long id, int row, int column) throws Exception {
+            return call("STEP " + id + " " + row + " " + column).startsWith("OK true");
+        }
+
+        @Override
+        public long create() throws Exception {
+            return Long.parseLong(call("NEW " + size + " " + mines).substring(3));
+        }
+
+        @Override
+        public void remove(long id) throws Exception {
+            call("DEL " + id);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final int size = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+        final int mines = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        final int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        final int workers = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors() * 2;
+        final boolean loopback = args.length > 5 && "loopback".equals(args[5]);
+
+        final SessionServer server = new SessionServer(Runtime.getRuntime().availableProcessors());
+        SessionSocketServer socketServer = null;
+        int port = 0;
+        if (loopback) {
+            socketServer = new SessionSocketServer(server);
+            port = socketServer.start(0);
+        }
+
+        final long[] ids = new long[sessions];
+        InProcessClient creator = new InProcessClient(server, size, mines);
+        for (int i = 0; i < sessions; i++) {
+            ids[i] = creator.create();
+        }
+        System.out.println("Resident sessions:" + server.getSessionCount());
+
+        final AtomicLong games = new AtomicLong();
+        final AtomicLong moves = new AtomicLong();
+        final long[][] samples = new long[workers][];
+        final int[] sampleCounts = new int[workers];
+        final long end = System.nanoTime() + seconds * 1000000000L;
+        Thread[] threads = new Thread[workers];
+        for (int w = 0; w < workers; w++) {
+            final int worker = w;
+            final Client client = loopback ? new LoopbackClient(port, size, mines) : new InProcessClient(server, size, mines);
+            threads[w] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(worker);
+                    long[] latency = new long[SAMPLES];
+                    int count = 0;
+                    //every worker plays only its own slice of sessions
+                    int from = (int) ((long) sessions * worker / workers);
+                    int to = (int) ((long) sessions * (worker + 1) / workers);
+                    int[] movesInGame = new int[to - from];
+                    try {
+                        while (System.nanoTime() < end && to > from) {
+                            int slot = from + random.nextInt(to - from);
+                            long start = System.nanoTime();
+                            boolean alive = client.step(ids[slot], random.nextInt(size), random.nextInt(size));
+                            latency[count++ & (SAMPLES - 1)] = System.nanoTime() - start;
+                            moves.incrementAndGet();
+                            if (!alive || ++movesInGame[slot - from] >= size * size) {
+                                client.remove(ids[slot]);
+                                ids[slot] = client.create();
+                                movesInGame[slot - from] = 0;
+                                games.incrementAndGet();
+                            }
+                        }
+                        client.close();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                    samples[worker] = latency;
+                    sampleCounts[worker] = Math.min(count, SAMPLES);
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        int total = 0;
+        for (int c : sampleCounts) {
+            total += c;
+        }
+        long[] all = new long[total];
+        int pos = 0;
+        for (int w = 0; w < workers; w++) {
+            if (samples[w] != null) {
+                System.arraycopy(samples[w], 0, all, pos, sampleCounts[w]);
+                pos += sampleCounts[w];
+            }
+        }
+        Arrays.sort(all, 0, pos);
+
+        System.out.printf("Mode:%s workers:%d sessions:%d board:%dx%d mines:%d%n",
+                loopback ? "loopback" : "inproc", workers, server.getSessionCount(), size, size, mines);
+        System.out.printf("Games/sec:%.1f moves/sec:%.1f%n", games.get() / elapsed, moves.get() / elapsed);
+        if (pos > 0) {
+            System.out.printf("Move latency p50:%.1fus p99:%.1fus max:%.1fus%n",
+                    all[pos / 2] / 1e3, all[(int) (pos * 0.99)] / 1e3, all[pos - 1] / 1e3);
+        }
+        System.out.println("Compacted idle sessions:" + server.compactIdle(0));
+
+        if (socketServer != null) {
+            socketServer.stop();
+        }
+        server.shutdown();
+    }
+}
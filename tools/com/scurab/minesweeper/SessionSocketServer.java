@@ -0,0 +1,156 @@
+package com.scurab.minesweeper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Simple line based TCP front end for {@link SessionServer}, JVM only, not part of app, used by {@link LoadGenerator}<br/>
+ * <p/>
+ * Commands (one per line):
+ * <pre>
+ * NEW size mines     -> OK id
+ * STEP id row column -> OK alive event,index,data ...
+ * FLAG id row column -> OK alive event,index,data ...
+ * CHORD id row column-> OK alive event,index,data ...
+ * STATE id           -> OK alive hexboard
+ * DEL id             -> OK true|false
+ * </pre>
+ * Any failure is returned as ERR message, e.g. size over {@link SessionServer#MAX_SIZE}.
+ */
+public class SessionSocketServer {
+
+    private final SessionServer mServer;
+
+    private ServerSocket mSocket;
+
+    private Thread mAcceptThread;
+
+    public SessionSocketServer(SessionServer server) {
+        if (server == null) {
+            throw new IllegalArgumentException("Server can't be null!");
+        }
+        mServer = server;
+    }
+
+    /**
+     * Start listening on loopback
+     *
+     * @param port 0 for any free port
+     * @return port used
+     * @throws IOException
+     */
+    public int start(int port) throws IOException {
+        mSocket = new ServerSocket(port, 128, InetAddress.getByName("127.0.0.1"));
+        mAcceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, "SessionSocketServer");
+        mAcceptThread.setDaemon(true);
+        mAcceptThread.start();
+        return mSocket.getLocalPort();
+    }
+
+    public void stop() throws IOException {
+        if (mSocket != null) {
+            mSocket.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!mSocket.isClosed()) {
+            try {
+                final Socket client = mSocket.accept();
+                client.setTcpNoDelay(true);
+                Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleClient(client);
+                    }
+                }, "SessionClient");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                //socket closed
+            }
+        }
+    }
+
+    private void handleClient(Socket client) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), "UTF-8"));
+            PrintWriter out = new PrintWriter(client.getOutputStream());
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.println(handleCommand(line));
+                out.flush();
+            }
+        } catch (IOException e) {
+            //client disconnected
+        } finally {
+            try {
+                client.close();
+            } catch (IOException e) {
+                //ignore
+            }
+        }
+    }
+
+    String handleCommand(String line) {
+        String[] args = line.trim().split(" +");
+        try {
+            String cmd = args[0];
+            if ("NEW".equals(cmd)) {
+                return "OK " + mServer.createSession(Integer.parseInt(args[1]), Integer.parseInt(args[2])).get();
+            } else if ("DEL".equals(cmd)) {
+                return "OK " + mServer.removeSession(Long.parseLong(args[1])).get();
+            }
+            long id = Long.parseLong(args[1]);
+            SessionRequest request;
+            if ("STEP".equals(cmd)) {
+                request = SessionRequest.step(id, Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            } else if ("FLAG".equals(cmd)) {
+                request = SessionRequest.flag(id, Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            } else if ("CHORD".equals(cmd)) {
+                request = SessionRequest.chord(id, Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            } else if ("STATE".equals(cmd)) {
+                request = SessionRequest.state(id);
+            } else {
+                return "ERR Unknown command:" + cmd;
+            }
+            return format(mServer.submit(request).get());
+        } catch (ExecutionException e) {
+            return "ERR " + e.getCause().getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERR Interrupted";
+        } catch (RuntimeException e) {
+            return "ERR " + e.getMessage();
+        }
+    }
+
+    private static String format(SessionResponse response) {
+        StringBuilder sb = new StringBuilder("OK ").append(response.isAlive());
+        byte[] board = response.getBoard();
+        if (board != null) {
+            sb.append(' ');
+            for (byte b : board) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+        }
+        for (int i = 0, n = response.getEventCount(); i < n; i++) {
+            sb.append(' ')
+                    .append(response.getEvent(i)).append(',')
+                    .append(response.getEventIndex(i)).append(',')
+                    .append(response.getEventData(i));
+        }
+        return sb.toString();
+    }
+}